@@ -145,6 +145,22 @@ public interface ProxyChatAccount extends Identified {
     setMutedUntil(0L);
   }
 
+  /**
+   * Whether this account has changes that haven't been saved yet. Accounts that don't track their
+   * changes always need saving.
+   *
+   * @return true if the account needs to be saved
+   */
+  default boolean isDirty() {
+    return true;
+  }
+
+  /** Flags the account as needing a save, for example after a failed save. */
+  default void markDirty() {}
+
+  /** Flags the account as saved. Storages call this right before writing the account. */
+  default void markClean() {}
+
   boolean hasPermission(Permission permission);
 
   boolean hasPermission(String permission);
@@ -21,11 +21,24 @@
 
 package uk.co.notnull.ProxyChat.api.account;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 public interface ProxyChatAccountStorage {
   void save(ProxyChatAccount account);
 
+  /**
+   * Save several accounts at once. Storages that can write in bulk should override this.<br>
+   * Accounts that could not be saved are marked as dirty again.
+   *
+   * @param accounts The accounts to save.
+   */
+  default void saveAll(Collection<? extends ProxyChatAccount> accounts) {
+    accounts.forEach(this::save);
+  }
+
   /**
    * Load a player with the given UUID from the data source this class represents.
    *
@@ -35,7 +48,26 @@ public interface ProxyChatAccountStorage {
    */
   AccountInfo load(UUID uuid);
 
+  /**
+   * Load several players at once. Storages that can read in bulk should override this.
+   *
+   * @param uuids UUIDs of the players to load.
+   * @return The loaded accounts, with an entry for every given UUID.
+   */
+  default Map<UUID, AccountInfo> loadAll(Collection<UUID> uuids) {
+    final Map<UUID, AccountInfo> accounts = new HashMap<>();
+
+    for (UUID uuid : uuids) {
+      accounts.put(uuid, load(uuid));
+    }
+
+    return accounts;
+  }
+
   default boolean requiresConsoleAccountSave() {
     return false;
   }
+
+  /** Releases any resources held by this storage, like database connections. */
+  default void close() {}
 }
@@ -27,7 +27,10 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
@@ -38,19 +41,54 @@ public final class HookManager {
   private static final MiniMessage miniMessage = MiniMessage.miniMessage();
 
   private static Map<String, ProxyChatHook> hooks = new LinkedHashMap<>();
+  // Resolved prefixes and suffixes, and their parsed components, per online account
+  private static final Map<UUID, Decoration> decorations = new ConcurrentHashMap<>();
 
   public static void addHook(String name, ProxyChatHook hook) {
     hooks.put(name, hook);
 
     sortHooks();
+    invalidateAll();
   }
 
   public static void removeHook(String name) {
     hooks.remove(name);
     sortHooks();
+    invalidateAll();
+  }
+
+  /**
+   * Drops the cached prefix and suffix of an account. Hooks must call this when a prefix or suffix
+   * changes. ProxyChat also calls it when a player switches servers.
+   */
+  public static void invalidate(UUID uuid) {
+    decorations.remove(uuid);
+  }
+
+  public static void invalidateAll() {
+    decorations.clear();
   }
 
   public static String getPrefix(ProxyChatAccount account) {
+    return getDecoration(account).prefix;
+  }
+
+  public static String getSuffix(ProxyChatAccount account) {
+    return getDecoration(account).suffix;
+  }
+
+  private static Decoration getDecoration(ProxyChatAccount account) {
+    // Only players on a server are dropped again on disconnect, so offline accounts and the console
+    // are resolved every time instead of filling the cache
+    if (account.getServer().isEmpty()) {
+      return new Decoration(resolvePrefix(account), resolveSuffix(account));
+    }
+
+    return decorations.computeIfAbsent(
+        account.getUniqueId(), uuid -> new Decoration(resolvePrefix(account), resolveSuffix(account)));
+  }
+
+  private static String resolvePrefix(ProxyChatAccount account) {
     Optional<String> out;
 
     for (ProxyChatHook hook : hooks.values()) {
@@ -62,7 +100,7 @@ public final class HookManager {
     return "";
   }
 
-  public static String getSuffix(ProxyChatAccount account) {
+  private static String resolveSuffix(ProxyChatAccount account) {
     Optional<String> out;
 
     for (ProxyChatHook hook : hooks.values()) {
@@ -83,37 +121,57 @@ public final class HookManager {
   }
 
   public static Component getPrefixComponent(ProxyChatAccount account) {
-    for (ProxyChatHook hook : hooks.values()) {
-      Optional<String> prefix = hook.getPrefix(account);
+    final Decoration decoration = getDecoration(account);
 
-      if(prefix.isPresent()) {
-        return miniMessage.deserialize(prefix.get());
-      }
+    if (decoration.prefixComponent == null) {
+      decoration.prefixComponent = miniMessage.deserialize(decoration.prefix);
     }
 
-    return Component.empty();
+    return decoration.prefixComponent;
   }
 
   public static Component getSuffixComponent(ProxyChatAccount account) {
-    for (ProxyChatHook hook : hooks.values()) {
-      Optional<String> suffix = hook.getSuffix(account);
+    final Decoration decoration = getDecoration(account);
 
-      if(suffix.isPresent()) {
-        return miniMessage.deserialize(suffix.get());
-      }
+    if (decoration.suffixComponent == null) {
+      decoration.suffixComponent = miniMessage.deserialize(decoration.suffix);
     }
 
-    return Component.empty();
+    return decoration.suffixComponent;
   }
 
   public static Component getFullNameComponent(ProxyChatAccount account) {
-    return miniMessage.deserialize(getPrefix(account) + account.getName() + getSuffix(account))
-            .clickEvent(ClickEvent.suggestCommand("/w " + account.getName() + " "))
-            .hoverEvent(Component.text("Click to whisper " + account.getName()));
+    final Decoration decoration = getDecoration(account);
+    final NamedComponent fullName = decoration.fullName;
+
+    if ((fullName != null) && fullName.name.equals(account.getName())) {
+      return fullName.component;
+    }
+
+    final Component component = getFullNameComponent(decoration, account, account.getName());
+    decoration.fullName = new NamedComponent(account.getName(), component);
+
+    return component;
   }
 
   public static Component getFullDisplayNameComponent(ProxyChatAccount account) {
-    return miniMessage.deserialize(getPrefix(account) + account.getDisplayName() + getSuffix(account))
+    final Decoration decoration = getDecoration(account);
+    final NamedComponent fullDisplayName = decoration.fullDisplayName;
+
+    // The display name can change without the prefix changing
+    if ((fullDisplayName != null) && Objects.equals(fullDisplayName.name, account.getDisplayName())) {
+      return fullDisplayName.component;
+    }
+
+    final Component component = getFullNameComponent(decoration, account, account.getDisplayName());
+    decoration.fullDisplayName = new NamedComponent(account.getDisplayName(), component);
+
+    return component;
+  }
+
+  private static Component getFullNameComponent(Decoration decoration, ProxyChatAccount account, String name) {
+    // Parsed as a whole, as the prefix may leave tags open for the name
+    return miniMessage.deserialize(decoration.prefix + name + decoration.suffix)
             .clickEvent(ClickEvent.suggestCommand("/w " + account.getName() + " "))
             .hoverEvent(Component.text("Click to whisper " + account.getName()));
   }
@@ -127,6 +185,31 @@ public final class HookManager {
                     Entry::getKey, Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
   }
 
+  private static final class Decoration {
+    private final String prefix;
+    private final String suffix;
+    // Parsed on first use. Parsing twice in a race is harmless
+    private volatile Component prefixComponent;
+    private volatile Component suffixComponent;
+    private volatile NamedComponent fullName;
+    private volatile NamedComponent fullDisplayName;
+
+    private Decoration(String prefix, String suffix) {
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+  }
+
+  private static final class NamedComponent {
+    private final String name;
+    private final Component component;
+
+    private NamedComponent(String name, Component component) {
+      this.name = name;
+      this.component = component;
+    }
+  }
+
   private HookManager() {
     throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
   }
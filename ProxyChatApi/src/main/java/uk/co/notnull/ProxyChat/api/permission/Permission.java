@@ -28,6 +28,7 @@ package uk.co.notnull.ProxyChat.api.permission;
 public enum Permission {
   PROXYCHAT_RELOAD("admin.reload"),
   PROXYCHAT_MODULES("admin.modules"),
+  PROXYCHAT_STATISTICS("admin.statistics"),
   CHECK_VERSION("admin.checkversion", false),
 
   USE_CHAT_COLOR_BLACK("chat.color.black"),
@@ -33,6 +33,7 @@ public class PlaceHolder implements ProxyChatPlaceHolder {
   private ReplacementSupplier replacementSupplier;
   private ComponentReplacementSupplier componentReplacementSupplier = context -> Component.text(replacementSupplier.get(context));
   private final List<Predicate<? super ProxyChatContext>> requirements = new LinkedList<>();
+  private boolean channelDependent = false;
 
   @SafeVarargs
   public PlaceHolder(
@@ -83,12 +84,36 @@ public class PlaceHolder implements ProxyChatPlaceHolder {
 
   @Override
   public Component getReplacementComponent(String name, ProxyChatContext context) {
-    return componentReplacementSupplier.get(context);
+    final MemoKey key = new MemoKey(this, name, true);
+
+    return channelDependent
+        ? context.memoizeForChannel(key, () -> componentReplacementSupplier.get(context))
+        : context.memoize(key, () -> componentReplacementSupplier.get(context));
   }
 
   @Override
   public String getReplacement(String name, ProxyChatContext context) {
-    return replacementSupplier.get(context);
+    final MemoKey key = new MemoKey(this, name, false);
+
+    return channelDependent
+        ? context.memoizeForChannel(key, () -> replacementSupplier.get(context))
+        : context.memoize(key, () -> replacementSupplier.get(context));
+  }
+
+  /**
+   * Placeholders are rendered at most once per context, and kept when only the channel of the
+   * context changes. Placeholders reading the channel must be marked, so they are rendered again.
+   *
+   * @return This placeholder
+   */
+  public PlaceHolder setChannelDependent(boolean channelDependent) {
+    this.channelDependent = channelDependent;
+
+    return this;
+  }
+
+  public boolean isChannelDependent() {
+    return channelDependent;
   }
 
   public void addRequirement(Predicate<? super ProxyChatContext> requirement) {
@@ -107,7 +132,9 @@ public class PlaceHolder implements ProxyChatPlaceHolder {
     PlaceHolder[] placeHolders = new PlaceHolder[size + 1];
 
     for (int i = 0; i < size; i++) {
-      placeHolders[i] = new PlaceHolder(aliases[i], replacementSupplier, requirements);
+      placeHolders[i] =
+          new PlaceHolder(aliases[i], replacementSupplier, requirements)
+              .setChannelDependent(channelDependent);
     }
 
     placeHolders[size] = this;
@@ -141,4 +168,31 @@ public class PlaceHolder implements ProxyChatPlaceHolder {
   public String getPlaceholder() {
     return this.placeholder;
   }
+
+  /** Identifies the rendering of a placeholder in {@link ProxyChatContext#memoize(Object, java.util.function.Supplier)} */
+  private static final class MemoKey {
+    private final PlaceHolder placeholder;
+    private final String name;
+    private final boolean component;
+
+    private MemoKey(PlaceHolder placeholder, String name, boolean component) {
+      this.placeholder = placeholder;
+      this.name = name;
+      this.component = component;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (o == this) return true;
+      if (!(o instanceof MemoKey other)) return false;
+
+      // Placeholders are compared by identity, as equal placeholders may render differently
+      return (placeholder == other.placeholder) && (component == other.component) && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return (System.identityHashCode(placeholder) * 31 + name.hashCode()) * 31 + (component ? 1 : 0);
+    }
+  }
 }
@@ -21,11 +21,15 @@
 
 package uk.co.notnull.ProxyChat.api.placeholder;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import net.kyori.adventure.text.Component;
@@ -34,7 +38,9 @@ import net.kyori.adventure.text.TextReplacementConfig;
 public final class PlaceHolderManager {
   public static final Character placeholderChar = '%';
   private static final Pattern placeholderPattern = Pattern.compile(placeholderChar + "\\w+?" + placeholderChar);
-  private static final List<ProxyChatPlaceHolder> placeholders = new LinkedList<>();
+  private static final List<ProxyChatPlaceHolder> placeholders = new CopyOnWriteArrayList<>();
+  // Placeholders by name, in registration order. Aliases are registered as separate placeholders
+  private static final Map<String, List<ProxyChatPlaceHolder>> placeholdersByName = new ConcurrentHashMap<>();
 
   public static Stream<ProxyChatPlaceHolder> getPlaceholderStream() {
     return placeholders.stream();
@@ -44,10 +50,49 @@ public final class PlaceHolderManager {
     return getPlaceholderStream().filter(placeholder -> placeholder.isContextApplicable(context));
   }
 
+  /**
+   * Finds the placeholder for a name. Only the requirements of the placeholders registered with that
+   * name are checked. Placeholders matching other names through {@link
+   * ProxyChatPlaceHolder#matchesName(String)} are only searched for names that aren't registered.
+   *
+   * @return The first placeholder with the given name that is applicable to the context
+   */
+  public static Optional<ProxyChatPlaceHolder> getApplicablePlaceholder(String name, ProxyChatContext context) {
+    final List<ProxyChatPlaceHolder> named = placeholdersByName.get(name);
+
+    if (named != null) {
+      for (ProxyChatPlaceHolder placeholder : named) {
+        if (placeholder.isContextApplicable(context)) {
+          return Optional.of(placeholder);
+        }
+      }
+
+      return Optional.empty();
+    }
+
+    for (ProxyChatPlaceHolder placeholder : placeholders) {
+      if (placeholder.matchesName(name) && placeholder.isContextApplicable(context)) {
+        return Optional.of(placeholder);
+      }
+    }
+
+    return Optional.empty();
+  }
+
   public static Component processMessage(Component message, ProxyChatContext context) {
-    final List<ProxyChatPlaceHolder> placeholders =
-        getApplicableStream(context).toList();
+    return processMessage(message, context,
+                          (placeholder, name) -> placeholder.getReplacementComponent(name, context));
+  }
 
+  /**
+   * Replaces placeholders in the given message, using the given resolver to render each matched
+   * placeholder. This allows callers rendering several formats for the same context to reuse
+   * previously rendered placeholder components.
+   */
+  public static Component processMessage(
+      Component message,
+      ProxyChatContext context,
+      BiFunction<ProxyChatPlaceHolder, String, Component> resolver) {
     TextReplacementConfig config = TextReplacementConfig.builder()
             .match(placeholderPattern).replacement(match -> {
               String placeholderName = match.content().substring(1, match.content().length() -1);
@@ -55,12 +100,11 @@ public final class PlaceHolderManager {
               if(placeholderName.charAt(0) == '%') {
                 return match;
               } else {
-                Optional<ProxyChatPlaceHolder> placeholder =
-                        placeholders.stream().filter(p -> p.matchesName(placeholderName)).findFirst();
+                Optional<ProxyChatPlaceHolder> placeholder = getApplicablePlaceholder(placeholderName, context);
 
                 if(placeholder.isPresent()) {
                   match.content("");
-                  match.append(placeholder.get().getReplacementComponent(placeholderName, context));
+                  match.append(resolver.apply(placeholder.get(), placeholderName));
                 }
               }
 
@@ -72,10 +116,8 @@ public final class PlaceHolderManager {
 
   public static String processMessage(String message, ProxyChatContext context) {
     final StringBuilder builder = new StringBuilder();
-    final List<ProxyChatPlaceHolder> placeholders =
-        getApplicableStream(context).collect(Collectors.toList());
 
-    processMessageInternal(message, context, builder, placeholders);
+    processMessageInternal(message, context, builder);
 
     return builder.toString();
   }
@@ -83,8 +125,7 @@ public final class PlaceHolderManager {
   private static void processMessageInternal(
       String message,
       ProxyChatContext context,
-      StringBuilder builder,
-      List<ProxyChatPlaceHolder> placeholders) {
+      StringBuilder builder) {
     boolean encounteredPlaceholder = false;
     StringBuilder placeholderName = null;
 
@@ -102,7 +143,7 @@ public final class PlaceHolderManager {
             placeholderName = null;
 
             Optional<ProxyChatPlaceHolder> placeholder =
-                placeholders.stream().filter(p -> p.matchesName(placeholderNameStr)).findFirst();
+                getApplicablePlaceholder(placeholderNameStr, context);
 
             if (placeholder.isPresent()) {
               // Apply the placeholder
@@ -110,7 +151,7 @@ public final class PlaceHolderManager {
                   placeholder.get().getReplacement(placeholderNameStr, context);
 
               // Apply placeholders to that (note that appends any normal string parts)
-              processMessageInternal(placeholderReplacement, context, builder, placeholders);
+              processMessageInternal(placeholderReplacement, context, builder);
             } else {
               // Placeholder not found, let's add it to the output verbatim (with the delimiter
               // surrounding it)
@@ -158,10 +199,20 @@ public final class PlaceHolderManager {
           "Placeholder " + placeholder.getName() + " has already been registered!");
 
     placeholders.add(placeholder);
+    placeholdersByName.merge(
+        placeholder.getName(),
+        Collections.singletonList(placeholder),
+        (registered, added) -> {
+          final List<ProxyChatPlaceHolder> merged = new ArrayList<>(registered);
+          merged.addAll(added);
+
+          return Collections.unmodifiableList(merged);
+        });
   }
 
   public static void clear() {
     placeholders.clear();
+    placeholdersByName.clear();
   }
 
   private PlaceHolderManager() {
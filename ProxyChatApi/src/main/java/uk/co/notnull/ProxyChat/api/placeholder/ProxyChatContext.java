@@ -30,7 +30,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import net.kyori.adventure.text.Component;
 import uk.co.notnull.ProxyChat.api.enums.ChannelType;
 
@@ -129,6 +131,10 @@ public class ProxyChatContext {
   private RegisteredServer server;
   private boolean parsed = false;
   private boolean filtered = false;
+  // Replaced instead of cleared when the context changes, as clones may share them
+  private volatile Map<Object, Object> memo = new ConcurrentHashMap<>();
+  // Values depending on the channel, which is changed between variants, e.g. LOCAL to MULTICAST
+  private volatile Map<Object, Object> channelMemo = new ConcurrentHashMap<>();
 
   public ProxyChatContext() {
     sender = null;
@@ -272,16 +278,19 @@ public class ProxyChatContext {
   public void setFilteredMessage(String message) {
     filtered = true;
     filteredMessage = message;
+    invalidateMemo();
   }
 
   public void setParsedMessage(Component message) {
     parsed = true;
     parsedMessage = message;
+    invalidateMemo();
   }
 
   public void setParsedFilteredMessage(Component message) {
     filtered = true;
     parsedFilteredMessage = message;
+    invalidateMemo();
   }
 
   // Fill the requirementsNameCache
@@ -304,6 +313,47 @@ public class ProxyChatContext {
     }
   }
 
+  /**
+   * Returns the memoized value for the key, computing it if this context hasn't memoized it yet.
+   * Memoized values are dropped whenever the context changes, except for the channel.<br>
+   * Used to render each placeholder at most once per context.
+   *
+   * @param key Key of the value, compared with {@link Object#equals(Object)}
+   * @param supplier Computes the value. It may use the context, including other memoized values
+   */
+  public <T> T memoize(Object key, Supplier<T> supplier) {
+    return memoize(memo, key, supplier);
+  }
+
+  /**
+   * Like {@link #memoize(Object, Supplier)}, for values that read the channel. They are also
+   * dropped when the channel changes.
+   */
+  public <T> T memoizeForChannel(Object key, Supplier<T> supplier) {
+    return memoize(channelMemo, key, supplier);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T memoize(Map<Object, Object> current, Object key, Supplier<T> supplier) {
+    // Not computeIfAbsent, as the supplier may memoize other values
+    Object value = current.get(key);
+
+    if (value == null) {
+      value = supplier.get();
+
+      if (value != null) {
+        current.put(key, value);
+      }
+    }
+
+    return (T) value;
+  }
+
+  private void invalidateMemo() {
+    memo = new ConcurrentHashMap<>();
+    channelMemo = new ConcurrentHashMap<>();
+  }
+
   public boolean isParsed() {
     return this.parsed;
   }
@@ -314,22 +364,27 @@ public class ProxyChatContext {
 
   public void setSender(final ProxyChatAccount sender) {
     this.sender = sender;
+    invalidateMemo();
   }
 
   public void setTarget(final ProxyChatAccount target) {
     this.target = target;
+    invalidateMemo();
   }
 
   public void setMessage(final String message) {
     this.message = message;
+    invalidateMemo();
   }
 
   public void setChannel(final ChannelType channel) {
     this.channel = channel;
+    channelMemo = new ConcurrentHashMap<>();
   }
 
   public void setServer(final RegisteredServer server) {
     this.server = server;
+    invalidateMemo();
   }
 
   public void setParsed(final boolean parsed) {
@@ -412,6 +467,9 @@ public class ProxyChatContext {
     getParsedFilteredMessage().ifPresent(context::setParsedFilteredMessage);
     getChannel().ifPresent(context::setChannel);
     getServer().ifPresent(context::setServer);
+    // The clone holds the same values, so it can share what was rendered until either one changes
+    context.memo = memo;
+    context.channelMemo = channelMemo;
 
     return context;
   }
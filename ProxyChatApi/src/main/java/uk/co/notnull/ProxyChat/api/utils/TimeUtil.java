@@ -21,107 +21,197 @@
 
 package uk.co.notnull.ProxyChat.api.utils;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A util class that exists to simply get date and time values like the year or the current
- * timestamp.
+ * timestamp.<br>
+ * The formatted values are cached and only formatted again once the second (or the minute for
+ * {@link #getShortTimeStamp()}) changes, so getting them doesn't allocate anything.
  */
 public final class TimeUtil {
+  /** The cached time and date values, with their default patterns. */
+  public enum Format {
+    LONG_TIME_STAMP("yyyy/MM/dd HH:mm:ss"),
+    TIME_STAMP("HH:mm:ss"),
+    SHORT_TIME_STAMP("HH:mm"),
+    DATE("yyyy/MM/dd"),
+    DAY("dd"),
+    MONTH("MM"),
+    YEAR("yyyy");
+
+    private final String defaultPattern;
+
+    Format(String defaultPattern) {
+      this.defaultPattern = defaultPattern;
+    }
+
+    public String getDefaultPattern() {
+      return defaultPattern;
+    }
+  }
+
+  private static final Format[] formats = Format.values();
+
+  private static volatile Clock clock = Clock.systemDefaultZone();
+  private static volatile DateTimeFormatter[] formatters = createFormatters(new EnumMap<>(Format.class));
+  private static volatile Snapshot snapshot = new Snapshot(Long.MIN_VALUE, new String[formats.length]);
+
+  /**
+   * Changes the time zone and patterns of the time and date values.
+   *
+   * @param zone The time zone, or <code>null</code> for the system default
+   * @param patterns Patterns for {@link DateTimeFormatter}. Formats without a pattern use their
+   *     default
+   */
+  public static void configure(ZoneId zone, Map<Format, String> patterns) {
+    configure((zone == null) ? Clock.systemDefaultZone() : Clock.system(zone), patterns);
+  }
+
+  /**
+   * Changes the clock and patterns of the time and date values.
+   *
+   * @param clock The clock providing the current time and time zone
+   * @param patterns Patterns for {@link DateTimeFormatter}. Formats without a pattern use their
+   *     default
+   */
+  public static void configure(Clock clock, Map<Format, String> patterns) {
+    final DateTimeFormatter[] newFormatters = createFormatters(patterns);
+
+    TimeUtil.clock = clock;
+    TimeUtil.formatters = newFormatters;
+    snapshot = new Snapshot(Long.MIN_VALUE, new String[formats.length]);
+  }
+
+  private static DateTimeFormatter[] createFormatters(Map<Format, String> patterns) {
+    final DateTimeFormatter[] created = new DateTimeFormatter[formats.length];
+
+    for (Format format : formats) {
+      created[format.ordinal()] =
+          DateTimeFormatter.ofPattern(patterns.getOrDefault(format, format.getDefaultPattern()));
+    }
+
+    return created;
+  }
+
+  /**
+   * Gets a time or date value, formatted at most once per second.
+   *
+   * @param format The value to get
+   * @return The current value
+   */
+  public static String get(Format format) {
+    final long second = Math.floorDiv(clock.millis(), 1000L);
+    Snapshot current = snapshot;
+
+    if (current.second != second) {
+      current = update(current, second);
+    }
+
+    return current.values[format.ordinal()];
+  }
+
+  private static Snapshot update(Snapshot previous, long second) {
+    final DateTimeFormatter[] currentFormatters = formatters;
+    final ZonedDateTime now = Instant.ofEpochSecond(second).atZone(clock.getZone());
+    final boolean sameMinute =
+        (previous.values[Format.SHORT_TIME_STAMP.ordinal()] != null)
+            && (Math.floorDiv(previous.second, 60L) == Math.floorDiv(second, 60L));
+    final String[] values = new String[formats.length];
+
+    for (Format format : formats) {
+      if ((format == Format.SHORT_TIME_STAMP) && sameMinute) {
+        values[format.ordinal()] = previous.values[format.ordinal()];
+      } else {
+        values[format.ordinal()] = currentFormatters[format.ordinal()].format(now);
+      }
+    }
+
+    // Racing threads format the same second, so it doesn't matter which snapshot is kept
+    final Snapshot updated = new Snapshot(second, values);
+    snapshot = updated;
+
+    return updated;
+  }
+
   /**
    * Gets the current timestamp in 24h format with date and double digits for both hour and minute,
    * separated by a colon.
    *
-   * @return The timestamp formatted like: <code>"yyyy/MM/dd HH:mm:ss"</code>
-   * @see SimpleDateFormat
+   * @return The timestamp formatted like: <code>"yyyy/MM/dd HH:mm:ss"</code> by default
+   * @see Format#LONG_TIME_STAMP
    */
   public static String getLongTimeStamp() {
-    SimpleDateFormat sdfDate = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-    Date now = new Date();
-
-    return sdfDate.format(now);
+    return get(Format.LONG_TIME_STAMP);
   }
 
   /**
    * Gets the current timestamp in 24h format and double digits for both hour and minute, separated
    * by a colon.
    *
-   * @return The timestamp formatted like: <code>"HH:mm:ss"</code>
-   * @see SimpleDateFormat
+   * @return The timestamp formatted like: <code>"HH:mm:ss"</code> by default
+   * @see Format#TIME_STAMP
    */
   public static String getTimeStamp() {
-    SimpleDateFormat sdfDate = new SimpleDateFormat("HH:mm:ss");
-    Date now = new Date();
-
-    return sdfDate.format(now);
+    return get(Format.TIME_STAMP);
   }
 
   /**
    * Gets the current timestamp in 24h format without seconds and double digits for both hour and
-   * minute, separated by a colon.
+   * minute, separated by a colon. Only updated once per minute.
    *
-   * @return The timestamp formatted like: <code>"HH:mm"</code>
-   * @see SimpleDateFormat
+   * @return The timestamp formatted like: <code>"HH:mm"</code> by default
+   * @see Format#SHORT_TIME_STAMP
    */
   public static String getShortTimeStamp() {
-    SimpleDateFormat sdfDate = new SimpleDateFormat("HH:mm");
-    Date now = new Date();
-
-    return sdfDate.format(now);
+    return get(Format.SHORT_TIME_STAMP);
   }
 
   /**
    * Gets the date in the month formatted to always have two digits. And the year with four.
    *
-   * @return The date formatted like: <code>"yyyy/MM/dd"</code>
-   * @see SimpleDateFormat
+   * @return The date formatted like: <code>"yyyy/MM/dd"</code> by default
+   * @see Format#DATE
    */
   public static String getDate() {
-    SimpleDateFormat sdfDate = new SimpleDateFormat("yyyy/MM/dd");
-    Date now = new Date();
-
-    return sdfDate.format(now);
+    return get(Format.DATE);
   }
 
   /**
    * Gets the day in the month formatted to always have two digits.
    *
-   * @return The date formatted like: <code>"dd"</code>
-   * @see SimpleDateFormat
+   * @return The date formatted like: <code>"dd"</code> by default
+   * @see Format#DAY
    */
   public static String getDay() {
-    SimpleDateFormat sdfDate = new SimpleDateFormat("dd");
-    Date now = new Date();
-
-    return sdfDate.format(now);
+    return get(Format.DAY);
   }
 
   /**
    * Gets the month in the year formatted to always have two digits.
    *
-   * @return The date formatted like: <code>"MM"</code>
-   * @see SimpleDateFormat
+   * @return The date formatted like: <code>"MM"</code> by default
+   * @see Format#MONTH
    */
   public static String getMonth() {
-    SimpleDateFormat sdfDate = new SimpleDateFormat("MM");
-    Date now = new Date();
-
-    return sdfDate.format(now);
+    return get(Format.MONTH);
   }
 
   /**
    * Gets the the year formatted to always have four digits.
    *
-   * @return The date formatted like: <code>"yyyy"</code>
-   * @see SimpleDateFormat
+   * @return The date formatted like: <code>"yyyy"</code> by default
+   * @see Format#YEAR
    */
   public static String getYear() {
-    SimpleDateFormat sdfDate = new SimpleDateFormat("yyyy");
-    Date now = new Date();
-
-    return sdfDate.format(now);
+    return get(Format.YEAR);
   }
 
   /**
@@ -161,6 +251,16 @@ public final class TimeUtil {
     return Double.parseDouble(timeToParse) * factor;
   }
 
+  private static final class Snapshot {
+    private final long second;
+    private final String[] values;
+
+    private Snapshot(long second, String[] values) {
+      this.second = second;
+      this.values = values;
+    }
+  }
+
   private TimeUtil() {
     throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
   }
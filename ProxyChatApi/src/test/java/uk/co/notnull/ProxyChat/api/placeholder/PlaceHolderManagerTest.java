@@ -28,10 +28,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 public class PlaceHolderManagerTest {
   private static final long TIMEOUT = 1000;
   private static final ProxyChatContext EMPTY_CONTEXT = new ProxyChatContext();
+  private static final AtomicInteger requirementChecks = new AtomicInteger();
 
   @BeforeClass
   public static void registerPlaceHolders() {
@@ -39,6 +43,11 @@ public class PlaceHolderManagerTest {
         new HelperPlaceholder("test", "HAIII"),
         new HelperPlaceholder("recursive1", "xxx %test% xxx"),
         new HelperPlaceholder("recursive2", "hihi %recursive1% hihi"));
+    PlaceHolderManager.registerPlaceholder(
+        new PlaceHolder(
+            "requirement",
+            context -> "required",
+            (Predicate<ProxyChatContext>) context -> requirementChecks.incrementAndGet() < 0));
   }
 
   @Test(expected = IllegalArgumentException.class)
@@ -93,6 +102,27 @@ public class PlaceHolderManagerTest {
   }
 
 
+  @Test(timeout = TIMEOUT)
+  public void lazyRequirementTest() {
+    final int checks = requirementChecks.get();
+
+    assertEquals("Test HAIII Test", PlaceHolderManager.processMessage("Test %test% Test", EMPTY_CONTEXT));
+    assertEquals(
+        "Requirements of unused placeholders shouldn't be checked", checks, requirementChecks.get());
+
+    assertEquals(
+        "Test %requirement% Test",
+        PlaceHolderManager.processMessage("Test %requirement% Test", EMPTY_CONTEXT));
+    assertEquals(checks + 1, requirementChecks.get());
+  }
+
+  @Test
+  public void applicablePlaceholderTest() {
+    assertEquals("test", PlaceHolderManager.getApplicablePlaceholder("test", EMPTY_CONTEXT).orElseThrow().getName());
+    assertEquals(Optional.empty(), PlaceHolderManager.getApplicablePlaceholder("requirement", EMPTY_CONTEXT));
+    assertEquals(Optional.empty(), PlaceHolderManager.getApplicablePlaceholder("xxx", EMPTY_CONTEXT));
+  }
+
   private static final class HelperPlaceholder implements ProxyChatPlaceHolder {
     private final String name;
     private final String replacement;
@@ -0,0 +1,102 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.api.placeholder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class PlaceHolderTest {
+  private final AtomicInteger renders = new AtomicInteger();
+  private final PlaceHolder placeholder =
+      new PlaceHolder("counter", context -> String.valueOf(renders.incrementAndGet()));
+
+  @Test
+  public void memoizedTest() {
+    final ProxyChatContext context = new ProxyChatContext();
+
+    assertEquals("1", placeholder.getReplacement("counter", context));
+    assertEquals("Should be rendered once per context", "1", placeholder.getReplacement("counter", context));
+    assertEquals("Each context renders separately", "2", placeholder.getReplacement("counter", new ProxyChatContext()));
+  }
+
+  @Test
+  public void contextChangeTest() {
+    final ProxyChatContext context = new ProxyChatContext();
+
+    placeholder.getReplacement("counter", context);
+    context.setMessage("Changed");
+
+    assertEquals("Changing the context should render again", "2", placeholder.getReplacement("counter", context));
+  }
+
+  @Test
+  public void channelChangeTest() {
+    final ProxyChatContext context = new ProxyChatContext();
+
+    placeholder.getReplacement("counter", context);
+    context.setChannel(ChannelType.MULTICAST);
+
+    assertEquals(
+        "Changing the channel should keep other placeholders", "1", placeholder.getReplacement("counter", context));
+  }
+
+  @Test
+  public void channelDependentTest() {
+    final ProxyChatContext context = new ProxyChatContext();
+    placeholder.setChannelDependent(true);
+
+    placeholder.getReplacement("counter", context);
+    context.setChannel(ChannelType.MULTICAST);
+
+    assertEquals("2", placeholder.getReplacement("counter", context));
+  }
+
+  @Test
+  public void aliasTest() {
+    final ProxyChatContext context = new ProxyChatContext();
+    final PlaceHolder[] aliases = placeholder.createAliases("alias");
+
+    placeholder.getReplacement("counter", context);
+
+    assertNotEquals(
+        "Aliases are separate placeholders", "1", aliases[0].getReplacement("alias", context));
+  }
+
+  @Test
+  public void cloneTest() {
+    final ProxyChatContext context = new ProxyChatContext("Test");
+    placeholder.getReplacement("counter", context);
+
+    final ProxyChatContext clone = context.clone();
+
+    assertEquals("Clones should share rendered placeholders", "1", placeholder.getReplacement("counter", clone));
+
+    clone.setParsedMessage(null);
+
+    assertEquals("2", placeholder.getReplacement("counter", clone));
+    assertEquals("Changing a clone shouldn't affect the original", "1", placeholder.getReplacement("counter", context));
+  }
+}
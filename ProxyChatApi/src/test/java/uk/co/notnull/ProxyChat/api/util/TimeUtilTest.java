@@ -22,14 +22,28 @@
 package uk.co.notnull.ProxyChat.api.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import uk.co.notnull.ProxyChat.api.utils.TimeUtil;
 import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.function.Supplier;
+import org.junit.After;
 import org.junit.Test;
 
 public class TimeUtilTest {
+  private static final Instant NOW = Instant.parse("2020-05-17T13:45:30.250Z");
+
+  @After
+  public void resetConfiguration() {
+    TimeUtil.configure((ZoneId) null, Map.of());
+  }
 
 	private static void assertCorrectTimeFormat(String timeFormat, Supplier<String> testMethod) {
     SimpleDateFormat sdfDate = new SimpleDateFormat(timeFormat);
@@ -127,4 +141,63 @@ public class TimeUtilTest {
   public void getYearTest() {
     assertCorrectTimeFormat("yyyy", TimeUtil::getYear);
   }
+
+  @Test
+  public void cachePerSecondTest() {
+    final TestClock clock = new TestClock();
+    TimeUtil.configure(clock, Map.of());
+
+    final String timeStamp = TimeUtil.getTimeStamp();
+
+    assertEquals("13:45:30", timeStamp);
+    clock.instant = NOW.plusMillis(500);
+    assertSame("Expected the cached value within the same second", timeStamp, TimeUtil.getTimeStamp());
+    clock.instant = NOW.plusSeconds(1);
+    assertEquals("13:45:31", TimeUtil.getTimeStamp());
+  }
+
+  @Test
+  public void shortTimeStampPerMinuteTest() {
+    final TestClock clock = new TestClock();
+    TimeUtil.configure(clock, Map.of());
+
+    final String shortTimeStamp = TimeUtil.getShortTimeStamp();
+
+    assertEquals("13:45", shortTimeStamp);
+    clock.instant = NOW.plusSeconds(20);
+    assertSame("Expected the cached value within the same minute", shortTimeStamp, TimeUtil.getShortTimeStamp());
+    clock.instant = NOW.plusSeconds(30);
+    assertEquals("13:46", TimeUtil.getShortTimeStamp());
+  }
+
+  @Test
+  public void configuredZoneAndPatternTest() {
+    final Map<TimeUtil.Format, String> patterns = new EnumMap<>(TimeUtil.Format.class);
+    patterns.put(TimeUtil.Format.DATE, "dd.MM.yyyy");
+
+    TimeUtil.configure(Clock.fixed(NOW, ZoneId.of("Asia/Tokyo")), patterns);
+
+    assertEquals("17.05.2020", TimeUtil.getDate());
+    assertEquals("22:45:30", TimeUtil.getTimeStamp());
+    assertEquals("2020/05/17 22:45:30", TimeUtil.getLongTimeStamp());
+  }
+
+  private static class TestClock extends Clock {
+    private Instant instant = NOW;
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
 }
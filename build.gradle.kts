@@ -22,6 +22,7 @@
 plugins {
     id("proxy-chat.java-conventions")
     alias(libs.plugins.shadow)
+    alias(libs.plugins.jmh)
 }
 
 dependencies {
@@ -42,6 +43,13 @@ dependencies {
     testImplementation(libs.powermockJunit)
 
     testCompileOnly(libs.spotbugsAnnotations)
+
+    jmh(libs.velocityApi)
+}
+
+jmh {
+    // Benchmarks use the dummy proxy classes of the tests
+    includeTests = true
 }
 
 description = "A velocity chat solution"
@@ -0,0 +1,152 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Compares the binary and the old serialized account file formats on 100k synthetic accounts. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountRecordBenchmark {
+  private static final int ACCOUNTS = 100_000;
+  private static final int MAX_IGNORES = 10;
+
+  private final List<AccountRecord> records = new ArrayList<>(ACCOUNTS);
+  private final List<byte[]> binary = new ArrayList<>(ACCOUNTS);
+  private final List<byte[]> serialized = new ArrayList<>(ACCOUNTS);
+
+  @Setup
+  public void setUp() throws IOException {
+    final Random random = new Random(42);
+    final ChannelType[] channelTypes = ChannelType.values();
+    long binarySize = 0;
+    long serializedSize = 0;
+
+    for (int i = 0; i < ACCOUNTS; i++) {
+      final List<UUID> ignored = new ArrayList<>();
+
+      for (int j = random.nextInt(MAX_IGNORES + 1); j > 0; j--) {
+        ignored.add(new UUID(random.nextLong(), random.nextLong()));
+      }
+
+      final AccountRecord record =
+          new AccountRecord(
+              "Player" + i,
+              channelTypes[random.nextInt(channelTypes.length)],
+              random.nextBoolean(),
+              random.nextBoolean(),
+              random.nextBoolean(),
+              random.nextBoolean(),
+              ignored,
+              new Timestamp(random.nextBoolean() ? 0L : System.currentTimeMillis()));
+
+      records.add(record);
+      binary.add(toBinary(record));
+      serialized.add(toSerialized(record));
+      binarySize += binary.get(i).length;
+      serializedSize += serialized.get(i).length;
+    }
+
+    System.out.printf(
+        "%nTotal size of %d accounts: binary %d bytes, serialized %d bytes%n",
+        ACCOUNTS, binarySize, serializedSize);
+  }
+
+  @Benchmark
+  public void writeBinary(Blackhole blackhole) throws IOException {
+    for (AccountRecord record : records) {
+      blackhole.consume(toBinary(record));
+    }
+  }
+
+  @Benchmark
+  public void writeSerialized(Blackhole blackhole) throws IOException {
+    for (AccountRecord record : records) {
+      blackhole.consume(toSerialized(record));
+    }
+  }
+
+  @Benchmark
+  public void readBinary(Blackhole blackhole) throws IOException {
+    for (byte[] data : binary) {
+      blackhole.consume(
+          AccountRecord.readBinary(new DataInputStream(new ByteArrayInputStream(data))));
+    }
+  }
+
+  @Benchmark
+  public void readSerialized(Blackhole blackhole) throws IOException, ClassNotFoundException {
+    for (byte[] data : serialized) {
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+        blackhole.consume(AccountRecord.readSerialized(in));
+      }
+    }
+  }
+
+  private static byte[] toBinary(AccountRecord record) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      record.writeBinary(out);
+    }
+
+    return bytes.toByteArray();
+  }
+
+  private static byte[] toSerialized(AccountRecord record) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      record.writeSerialized(out);
+    }
+
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import org.slf4j.LoggerFactory;
+import uk.co.notnull.ProxyChat.ProxyChat;
+import uk.co.notnull.ProxyChat.account.AccountRecord;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import uk.co.notnull.ProxyChat.util.DummyPlayer;
+import uk.co.notnull.ProxyChat.velocity.DummyProxyServer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares serial and parallel delivery of one message to 5k players. Sending to a dummy player
+ * burns a little CPU, standing in for encoding and writing the chat packet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FanOutBenchmark {
+  private static final int RECIPIENTS = 5_000;
+
+  // 0 delivers serially
+  @Param({"0", "1000"})
+  public int parallelFanOutThreshold;
+
+  @Param({"200"})
+  public int sendCost;
+
+  private final Component message = Component.text("Hello world");
+  private List<ProxyChatAccount> recipients;
+
+  @Setup
+  public void setUp() {
+    final Map<UUID, Player> players = new HashMap<>();
+
+    for (int i = 0; i < RECIPIENTS; i++) {
+      final UUID uuid = UUID.randomUUID();
+
+      players.put(
+          uuid,
+          new DummyPlayer(uuid) {
+            @Override
+            public void sendMessage(@NotNull Component message) {
+              Blackhole.consumeCPU(sendCost);
+            }
+          });
+    }
+
+    final ProxyChat proxyChat =
+        new ProxyChat(
+            new DummyProxyServer() {
+              @Override
+              public Optional<Player> getPlayer(UUID uuid) {
+                return Optional.ofNullable(players.get(uuid));
+              }
+            },
+            LoggerFactory.getLogger("benchmark"));
+    proxyChat.onLoad();
+
+    recipients = new ArrayList<>(RECIPIENTS);
+
+    for (UUID uuid : players.keySet()) {
+      recipients.add(
+          new AccountRecord(
+                  "Player",
+                  ChannelType.GLOBAL,
+                  false,
+                  true,
+                  false,
+                  false,
+                  Collections.emptyList(),
+                  new Timestamp(0))
+              .toAccount(uuid));
+    }
+
+    MessagesService.configurePipeline(0, 0, parallelFanOutThreshold);
+  }
+
+  @TearDown
+  public void tearDown() {
+    MessagesService.shutdownPipeline(1000);
+  }
+
+  @Benchmark
+  public void fanOut() {
+    MessagesService.sendToMatchingPlayers(message, recipients, account -> true);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import uk.co.notnull.ProxyChat.api.placeholder.PlaceHolderManager;
+import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatContext;
+import uk.co.notnull.ProxyChat.util.ComponentUtil;
+import java.util.concurrent.TimeUnit;
+import net.kyori.adventure.text.Component;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares parsing a format and replacing its placeholders for every message with rendering a
+ * compiled {@link FormatTemplate}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FormatTemplateBenchmark {
+  private static final String FORMAT =
+      "<gray>[%time%]</gray> <blue>%channel% > </blue><yellow><hover:show_text:'Sent at %timestamp%'>"
+          + "Someone</hover>: </yellow>%message%";
+
+  private ProxyChatContext context;
+  private FormatTemplate template;
+
+  @Setup
+  public void setUp() {
+    PlaceHolders.registerPlaceHolders();
+
+    context = new ProxyChatContext("Hello world");
+    context.setChannel(ChannelType.GLOBAL);
+    context.setParsedMessage(Component.text("Hello world"));
+    template = FormatTemplate.compile(ComponentUtil.miniMessage.deserialize(FORMAT));
+  }
+
+  @Benchmark
+  public Component parseAndReplace() {
+    return PlaceHolderManager.processMessage(ComponentUtil.miniMessage.deserialize(FORMAT), context);
+  }
+
+  @Benchmark
+  public Component template() {
+    return template.render(context);
+  }
+}
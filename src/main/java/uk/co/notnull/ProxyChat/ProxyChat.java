@@ -25,23 +25,32 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.typesafe.config.Config;
+import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.event.proxy.ProxyReloadEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.PluginDescription;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
 import uk.co.notnull.ProxyChat.account.AccountFileStorage;
+import uk.co.notnull.ProxyChat.account.AccountLogStorage;
 import uk.co.notnull.ProxyChat.account.AccountSQLStorage;
+import uk.co.notnull.ProxyChat.account.ConnectionPool;
+import uk.co.notnull.ProxyChat.account.PermissionSnapshot;
 import uk.co.notnull.ProxyChat.account.ProxyChatAccountManager;
 import uk.co.notnull.ProxyChat.api.ProxyChatApi;
 import uk.co.notnull.ProxyChat.api.account.AccountManager;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccountStorage;
 import uk.co.notnull.ProxyChat.api.hook.HookManager;
 import uk.co.notnull.ProxyChat.api.module.ModuleManager;
 import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatContext;
 import uk.co.notnull.ProxyChat.api.placeholder.InvalidContextError;
 import uk.co.notnull.ProxyChat.api.placeholder.PlaceHolderManager;
 import uk.co.notnull.ProxyChat.api.utils.ProxyChatInstaceHolder;
+import uk.co.notnull.ProxyChat.api.utils.TimeUtil;
 import uk.co.notnull.ProxyChat.command.ProxyChatCommand;
 import uk.co.notnull.ProxyChat.config.Configuration;
 import uk.co.notnull.ProxyChat.hook.DefaultHook;
@@ -59,7 +68,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 
 public class ProxyChat implements ProxyChatApi {
@@ -81,6 +95,9 @@ public class ProxyChat implements ProxyChatApi {
   private ProxyChatEventsListener proxyChatEventsListener;
   private MutingListener mutingListener;
   private ProxyDiscordHandler proxyDiscordHandler;
+  private ScheduledTask offlineCacheCleanupTask;
+  private ScheduledTask recipientRefreshTask;
+  private long shutdownSaveTimeout;
 
 	@Inject
   public ProxyChat(ProxyServer proxy, Logger logger) {
@@ -126,9 +143,11 @@ public class ProxyChat implements ProxyChatApi {
 
     PlaceHolders.registerPlaceHolders();
 
+    final Config accountStorage = Configuration.get().getConfig("AccountStorage");
     final Config accountDatabase = Configuration.get().getConfig("AccountDatabase");
     final Config databaseCredentials = accountDatabase.getConfig("credentials");
     final Config connectionProperties = accountDatabase.getConfig("properties");
+    final Config poolSettings = accountDatabase.getConfig("pool");
     final ImmutableMap<String, String> connectionPropertiesMap =
         connectionProperties.entrySet().stream()
             .collect(
@@ -145,16 +164,52 @@ public class ProxyChat implements ProxyChatApi {
                 databaseCredentials.getString("user"),
                 databaseCredentials.getString("password"),
                 databaseCredentials.getString("tablePrefix"),
-                connectionPropertiesMap));
+                connectionPropertiesMap,
+                new ConnectionPool.Settings(
+                    poolSettings.getInt("minSize"),
+                    poolSettings.getInt("maxSize"),
+                    poolSettings.getDuration("connectionTimeout", TimeUnit.MILLISECONDS),
+                    poolSettings.getDuration("idleTimeout", TimeUnit.MILLISECONDS),
+                    (int) poolSettings.getDuration("validationTimeout", TimeUnit.SECONDS),
+                    poolSettings.getDuration("leakDetectionThreshold", TimeUnit.MILLISECONDS))));
       } catch (SQLException e) {
         LoggerHelper.error("Could not connect to specified database. Using file storage", e);
 
-        AccountManager.setAccountStorage(new AccountFileStorage());
+        AccountManager.setAccountStorage(createFileStorage(accountStorage));
       }
     } else {
-      AccountManager.setAccountStorage(new AccountFileStorage());
+      AccountManager.setAccountStorage(createFileStorage(accountStorage));
     }
 
+    ProxyChatAccountManager.getSaveQueue()
+        .configure(
+            accountStorage.getDuration("saveInterval", TimeUnit.MILLISECONDS),
+            accountStorage.getInt("saveBatchSize"));
+    ProxyChatAccountManager.configureOfflineCache(
+        accountStorage.getLong("offlineCacheSize"),
+        accountStorage.getDuration("offlineCacheExpiry", TimeUnit.MILLISECONDS));
+    ProxyChatAccountManager.configureLoginBatching(
+        accountStorage.getDuration("loginBatchWindow", TimeUnit.MILLISECONDS),
+        accountStorage.getInt("loginBatchSize"));
+    ProxyChatAccountManager.configureIoLanes(poolSettings.getInt("maxSize"));
+    PermissionSnapshot.setExpiry(
+        Configuration.get().getDuration("PermissionCache.expiry", TimeUnit.MILLISECONDS));
+    configureTime(Configuration.get().getConfig("Time"));
+    final Config chatPipeline = Configuration.get().getConfig("ChatPipeline");
+    MessagesService.configurePipeline(
+        chatPipeline.getInt("threads"),
+        chatPipeline.getInt("queueCapacity"),
+        chatPipeline.getInt("parallelFanOutThreshold"),
+        chatPipeline.getDuration("shutdownTimeout", TimeUnit.MILLISECONDS));
+
+    shutdownSaveTimeout = accountStorage.getDuration("shutdownSaveTimeout", TimeUnit.MILLISECONDS);
+    offlineCacheCleanupTask =
+        proxy
+            .getScheduler()
+            .buildTask(this, () -> ProxyChatAccountManager.getOfflineCache().cleanUp())
+            .repeat(1, TimeUnit.MINUTES)
+            .schedule();
+
     ProxyChatCommand proxyChatCommand = new ProxyChatCommand();
     proxyChatAccountManager = new ProxyChatAccountManager();
     channelTypeCorrectorListener = new ChannelTypeCorrectorListener();
@@ -166,6 +221,24 @@ public class ProxyChat implements ProxyChatApi {
     proxy.getEventManager().register(this, mutingListener);
     proxy.getEventManager().register(this, channelTypeCorrectorListener);
     proxy.getEventManager().register(this, proxyChatEventsListener);
+    // Registered here instead of with @Subscribe, as onDisable unregisters all of our listeners
+    proxy
+        .getEventManager()
+        .register(this, ProxyShutdownEvent.class, PostOrder.LAST, event -> onDisable());
+
+    // Loaded accounts are kept over reloads, so only players without one need loading
+    ProxyChatAccountManager.loadAccounts(
+        proxy.getAllPlayers().stream()
+            .map(Player::getUniqueId)
+            .filter(uuid -> AccountManager.getAccount(uuid).isEmpty())
+            .toList());
+    ProxyChatAccountManager.rebuildServerIndex();
+    recipientRefreshTask =
+        proxy
+            .getScheduler()
+            .buildTask(this, this::refreshRecipients)
+            .repeat(Math.max(1000, PermissionSnapshot.getExpiryMillis()), TimeUnit.MILLISECONDS)
+            .schedule();
 
     Config prefixDefaults = Configuration.get().getConfig("PrefixSuffixSettings");
 
@@ -178,7 +251,75 @@ public class ProxyChat implements ProxyChatApi {
     ServerNameUtil.init();
   }
 
+  private static void configureTime(Config time) {
+    final Config patterns = time.getConfig("patterns");
+    final Map<TimeUtil.Format, String> formats = new EnumMap<>(TimeUtil.Format.class);
+    ZoneId zone = null;
+
+    formats.put(TimeUtil.Format.LONG_TIME_STAMP, patterns.getString("timestamp"));
+    formats.put(TimeUtil.Format.TIME_STAMP, patterns.getString("time"));
+    formats.put(TimeUtil.Format.SHORT_TIME_STAMP, patterns.getString("shortTime"));
+    formats.put(TimeUtil.Format.DATE, patterns.getString("date"));
+    formats.put(TimeUtil.Format.DAY, patterns.getString("day"));
+    formats.put(TimeUtil.Format.MONTH, patterns.getString("month"));
+    formats.put(TimeUtil.Format.YEAR, patterns.getString("year"));
+
+    try {
+      if (!time.getString("zone").isEmpty()) {
+        zone = ZoneId.of(time.getString("zone"));
+      }
+    } catch (DateTimeException e) {
+      LoggerHelper.warning("Invalid time zone " + time.getString("zone") + ", using the default", e);
+    }
+
+    try {
+      TimeUtil.configure(zone, formats);
+    } catch (IllegalArgumentException e) {
+      LoggerHelper.warning("Invalid time pattern, using the defaults", e);
+      TimeUtil.configure(zone, Collections.emptyMap());
+    }
+  }
+
+  /**
+   * Without a permission plugin that reports changes, recipient groups based on permissions are
+   * checked again whenever cached permissions expire.
+   */
+  private void refreshRecipients() {
+    if (!PermissionSnapshot.isInvalidatedByEvents()) {
+      ProxyChatAccountManager.getRecipientIndex().refresh();
+    }
+  }
+
+  private ProxyChatAccountStorage createFileStorage(Config accountStorage) {
+    if (!accountStorage.getString("fileFormat").equalsIgnoreCase("log")) {
+      return new AccountFileStorage();
+    }
+
+    try {
+      final AccountLogStorage logStorage =
+          new AccountLogStorage(
+              getConfigFolder().toPath().resolve("accounts"),
+              (int) accountStorage.getBytes("logSegmentSize").longValue(),
+              accountStorage.getDouble("logCompactionThreshold"));
+      final int imported =
+          logStorage.importFileStorage(getConfigFolder().toPath().resolve("userdata"));
+
+      if (imported > 0) {
+        LoggerHelper.info("Imported " + imported + " accounts into the account log");
+      }
+
+      return logStorage;
+    } catch (IOException e) {
+      LoggerHelper.error("Could not open the account log. Using file storage", e);
+
+      return new AccountFileStorage();
+    }
+  }
+
   public void onDisable() {
+    // Queued messages still need the hooks, modules and placeholders
+    MessagesService.shutdownPipeline();
+
     HookManager.removeHook(defaultHookName);
     HookManager.removeHook(storedDataHookName);
     ModuleManager.disableModules();
@@ -198,6 +339,20 @@ public class ProxyChat implements ProxyChatApi {
     PlaceHolderManager.clear();
     PlaceHolderUtil.clearConfigSections();
     ModuleManager.clearActiveModules();
+
+    if (offlineCacheCleanupTask != null) {
+      offlineCacheCleanupTask.cancel();
+    }
+
+    if (recipientRefreshTask != null) {
+      recipientRefreshTask.cancel();
+    }
+
+    if (AccountManager.getAccountStorage() != null) {
+      ProxyChatAccountManager.evictOfflineAccounts();
+      ProxyChatAccountManager.flushAll(shutdownSaveTimeout);
+      AccountManager.getAccountStorage().close();
+    }
   }
 
   @Override
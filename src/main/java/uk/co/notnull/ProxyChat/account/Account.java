@@ -32,11 +32,17 @@ import uk.co.notnull.ProxyChat.api.enums.ChannelType;
 import uk.co.notnull.ProxyChat.module.ProxyChatModuleManager;
 import uk.co.notnull.ProxyChat.api.permission.Permission;
 import uk.co.notnull.ProxyChat.util.DummyPlayer;
+import uk.co.notnull.ProxyChat.util.ReadOnlyBlockingQueue;
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 public class Account implements ProxyChatAccount {
@@ -44,7 +50,10 @@ public class Account implements ProxyChatAccount {
 
   private final UUID uuid;
 
-  private final Player player;
+  // Replaced when a cached account is reused for a new connection of the same player
+  private volatile Player player;
+  // Taken on the first permission check, see PermissionSnapshot
+  private volatile PermissionSnapshot permissions;
 
   private ChannelType channelType;
   private boolean vanished;
@@ -55,9 +64,17 @@ public class Account implements ProxyChatAccount {
 
   private boolean localSpy;
 
-  private final BlockingQueue<UUID> ignored;
+  private final Set<UUID> ignored = ConcurrentHashMap.newKeySet();
+  private final BlockingQueue<UUID> ignoredView = new ReadOnlyBlockingQueue<>(ignored);
   private Timestamp mutedUntil;
 
+  // Set whenever a stored field changes, cleared when a save of this account starts
+  private volatile boolean dirty = false;
+
+  // Ignore changes since the account was loaded or last saved, so only those need to be written
+  private Set<UUID> addedIgnores = new HashSet<>();
+  private Set<UUID> removedIgnores = new HashSet<>();
+
   protected Account(UUID uuid) {
     this.uuid = uuid;
 
@@ -72,7 +89,6 @@ public class Account implements ProxyChatAccount {
     messanger = true;
     socialSpy = false;
     localSpy = false;
-    ignored = new LinkedBlockingQueue<>();
     mutedUntil = new Timestamp(0);
   }
 
@@ -83,7 +99,7 @@ public class Account implements ProxyChatAccount {
       boolean messanger,
       boolean socialSpy,
       boolean localSpy,
-      BlockingQueue<UUID> ignored,
+      Collection<UUID> ignored,
       Timestamp mutedUntil) {
     this.uuid = uuid;
     this.player = ProxyChat.getInstance().getProxy().getPlayer(uuid).orElse(new DummyPlayer(uuid));
@@ -92,7 +108,7 @@ public class Account implements ProxyChatAccount {
     this.messanger = messanger;
     this.socialSpy = socialSpy;
     this.localSpy = localSpy;
-    this.ignored = ignored;
+    this.ignored.addAll(ignored);
     this.mutedUntil = mutedUntil;
   }
 
@@ -129,20 +145,55 @@ public class Account implements ProxyChatAccount {
     return localSpy;
   }
 
+  /** Like {@link #hasSocialSpyEnabled()}, but without switching social spy off. */
+  boolean isSocialSpyActive() {
+    return socialSpy && hasPermission(Permission.COMMAND_SOCIALSPY);
+  }
+
+  /** Like {@link #hasLocalSpyEnabled()}, but without switching local spy off. */
+  boolean isLocalSpyActive() {
+    return localSpy && hasPermission(Permission.COMMAND_LOCALSPY);
+  }
+
+  /** The social spy setting as stored, without checking the permission. */
+  boolean getSocialSpySetting() {
+    return socialSpy;
+  }
+
+  /** The local spy setting as stored, without checking the permission. */
+  boolean getLocalSpySetting() {
+    return localSpy;
+  }
+
   @Override
   public BlockingQueue<UUID> getIgnored() {
     return ProxyChatModuleManager.IGNORING_MODULE.isEnabled()
-        ? ignored
+        ? ignoredView
         : new LinkedBlockingQueue<>();
   }
 
+  @Override
+  public boolean hasIgnored(UUID uuid) {
+    return ProxyChatModuleManager.IGNORING_MODULE.isEnabled() && ignored.contains(uuid);
+  }
+
+  /** The stored ignores, regardless of whether the ignoring module is enabled. */
+  Set<UUID> getIgnoredSet() {
+    return Collections.unmodifiableSet(ignored);
+  }
+
   public boolean hasIgnored(Player player) {
     return hasIgnored(player.getUniqueId());
   }
 
   @Override
-  public void addIgnore(UUID uuid) {
-    ignored.add(uuid);
+  public synchronized void addIgnore(UUID uuid) {
+    if (!ignored.add(uuid)) return;
+
+    removedIgnores.remove(uuid);
+    addedIgnores.add(uuid);
+    dirty = true;
+    ProxyChatAccountManager.getIgnoreIndex().onIgnoreAdded(this.uuid, uuid);
   }
 
   public void addIgnore(Player player) {
@@ -150,8 +201,13 @@ public class Account implements ProxyChatAccount {
   }
 
   @Override
-  public void removeIgnore(UUID uuid) {
-    ignored.remove(uuid);
+  public synchronized void removeIgnore(UUID uuid) {
+    if (!ignored.remove(uuid)) return;
+
+    addedIgnores.remove(uuid);
+    removedIgnores.add(uuid);
+    dirty = true;
+    ProxyChatAccountManager.getIgnoreIndex().onIgnoreRemoved(this.uuid, uuid);
   }
 
   public void removeIgnore(Player player) {
@@ -215,7 +271,19 @@ public class Account implements ProxyChatAccount {
 
   @Override
   public boolean hasPermission(Permission permission) {
-    return player.hasPermission(permission.getStringedPermission());
+    PermissionSnapshot snapshot = permissions;
+
+    if (snapshot == null || snapshot.isExpired()) {
+      snapshot = PermissionSnapshot.of(player);
+      permissions = snapshot;
+    }
+
+    return snapshot.has(permission);
+  }
+
+  /** Drops the cached permissions, so the next check asks the permission plugin again. */
+  public void invalidatePermissions() {
+    permissions = null;
   }
 
   public ChannelType getChannelType() {
@@ -231,29 +299,85 @@ public class Account implements ProxyChatAccount {
   }
 
   public void setChannelType(final ChannelType channelType) {
+    if (this.channelType != channelType) dirty = true;
+
     this.channelType = channelType;
   }
 
   public void setVanished(final boolean vanished) {
+    if (this.vanished != vanished) dirty = true;
+
     this.vanished = vanished;
   }
 
   public void setMessanger(final boolean messanger) {
+    if (this.messanger != messanger) dirty = true;
+
     this.messanger = messanger;
   }
 
   public void setSocialSpy(final boolean socialSpy) {
+    if (this.socialSpy != socialSpy) dirty = true;
+
     this.socialSpy = socialSpy;
+    ProxyChatAccountManager.getRecipientIndex().update(this);
   }
 
   public void setLocalSpy(final boolean localSpy) {
+    if (this.localSpy != localSpy) dirty = true;
+
     this.localSpy = localSpy;
+    ProxyChatAccountManager.getRecipientIndex().update(this);
   }
 
   public void setMutedUntil(final Timestamp mutedUntil) {
+    if (!Objects.equals(this.mutedUntil, mutedUntil)) dirty = true;
+
     this.mutedUntil = mutedUntil;
   }
 
+  @Override
+  public boolean isDirty() {
+    return dirty;
+  }
+
+  @Override
+  public void markDirty() {
+    dirty = true;
+  }
+
+  @Override
+  public void markClean() {
+    dirty = false;
+  }
+
+  /**
+   * Returns the ignores added and removed since the last call and starts tracking anew. Used by
+   * storages that only write the changes.
+   */
+  synchronized IgnoreChanges takeIgnoreChanges() {
+    final IgnoreChanges changes = new IgnoreChanges(addedIgnores, removedIgnores);
+
+    addedIgnores = new HashSet<>();
+    removedIgnores = new HashSet<>();
+
+    return changes;
+  }
+
+  /**
+   * Puts changes taken with {@link #takeIgnoreChanges()} back after a failed save. Changes made in
+   * the meantime are newer and take precedence.
+   */
+  synchronized void restoreIgnoreChanges(IgnoreChanges changes) {
+    for (UUID uuid : changes.getAdded()) {
+      if (!removedIgnores.contains(uuid)) addedIgnores.add(uuid);
+    }
+
+    for (UUID uuid : changes.getRemoved()) {
+      if (!addedIgnores.contains(uuid)) removedIgnores.add(uuid);
+    }
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (o == this) return true;
@@ -278,4 +402,27 @@ public class Account implements ProxyChatAccount {
   public Player getPlayer() {
     return this.player;
   }
+
+  void setPlayer(Player player) {
+    this.player = player;
+    permissions = null;
+  }
+
+  static final class IgnoreChanges {
+    private final Set<UUID> added;
+    private final Set<UUID> removed;
+
+    private IgnoreChanges(Set<UUID> added, Set<UUID> removed) {
+      this.added = added;
+      this.removed = removed;
+    }
+
+    Set<UUID> getAdded() {
+      return added;
+    }
+
+    Set<UUID> getRemoved() {
+      return removed;
+    }
+  }
 }
@@ -25,20 +25,24 @@ import uk.co.notnull.ProxyChat.api.ProxyChatApi;
 import uk.co.notnull.ProxyChat.api.account.AccountInfo;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccountStorage;
-import uk.co.notnull.ProxyChat.api.enums.ChannelType;
 import uk.co.notnull.ProxyChat.util.LoggerHelper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.sql.Timestamp;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
 
 public class AccountFileStorage implements ProxyChatAccountStorage {
-  private static final String FILE_EXTENSION = ".sav";
+  static final String FILE_EXTENSION = ".sav";
+  private static final String TEMP_FILE_EXTENSION = ".tmp";
 
   private static File getUserDataDir() throws IOException {
     File folder = new File(ProxyChatApi.getInstance().getConfigFolder(), "userdata");
@@ -50,31 +54,44 @@ public class AccountFileStorage implements ProxyChatAccountStorage {
 
   @Override
   public void save(ProxyChatAccount account) {
+    Path tempFile = null;
+
     try {
-      File accountFile = new File(getUserDataDir(), account.getUniqueId() + FILE_EXTENSION);
+      Path accountFile = getUserDataDir().toPath().resolve(account.getUniqueId() + FILE_EXTENSION);
+      // Written to a temporary file first, so a crash mid-write never leaves a truncated save behind.
+      // Every save gets its own file, as the same account may be saved by two threads at once
+      tempFile =
+          Files.createTempFile(
+              accountFile.getParent(), accountFile.getFileName() + ".", TEMP_FILE_EXTENSION);
 
-      if (!accountFile.exists() && !accountFile.createNewFile()) {
-        throw new IOException("Could not create " + accountFile);
+      try (DataOutputStream save =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        AccountRecord.of(account).writeBinary(save);
       }
 
-      try (FileOutputStream saveFile = new FileOutputStream(accountFile)) {
-        try (ObjectOutputStream save = new ObjectOutputStream(saveFile)) {
-          save.writeObject(account.getName());
-          save.writeObject(account.getChannelType());
-          save.writeObject(account.isVanished());
-          save.writeObject(account.hasMessangerEnabled());
-          save.writeObject(account.hasSocialSpyEnabled());
-          save.writeObject(account.hasLocalSpyEnabled());
-          save.writeObject(account.getIgnored());
-          save.writeObject(account.getMutedUntil());
-        }
+      try {
+        Files.move(
+            tempFile,
+            accountFile,
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, accountFile, StandardCopyOption.REPLACE_EXISTING);
       }
     } catch (IOException e) {
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException ignored) {
+          // Only a leftover temporary file
+        }
+      }
+
       LoggerHelper.warning("Could not save player " + account.getUniqueId(), e);
+      account.markDirty();
     }
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public AccountInfo load(UUID uuid) {
     try {
@@ -82,24 +99,11 @@ public class AccountFileStorage implements ProxyChatAccountStorage {
 
       if (!accountFile.exists()) return new AccountInfo(new Account(uuid), false, true);
 
-      try (FileInputStream saveFile = new FileInputStream(accountFile)) {
-        try (ObjectInputStream save = new ObjectInputStream(saveFile)) {
-          // Read Name (and discard it (for now))
-          save.readObject();
-
-          return new AccountInfo(
-                  new Account(
-                          uuid,
-                          (ChannelType) save.readObject(),
-                          (boolean) save.readObject(),
-                          (boolean) save.readObject(),
-                          (boolean) save.readObject(),
-                          (boolean) save.readObject(),
-                          (BlockingQueue<UUID>) save.readObject(),
-                          (Timestamp) save.readObject()),
-                  false,
-                  false);
-        }
+      try (InputStream saveFile = new BufferedInputStream(Files.newInputStream(accountFile.toPath()))) {
+        boolean binary = isBinary(saveFile);
+
+        // Files saved by older versions are saved again right away, converting them to the binary format
+        return new AccountInfo(readRecord(saveFile, binary).toAccount(uuid), !binary, false);
       }
     } catch (IOException | ClassNotFoundException | ClassCastException e) {
       LoggerHelper.warning("Could not load player " + uuid, e);
@@ -107,4 +111,32 @@ public class AccountFileStorage implements ProxyChatAccountStorage {
       return new AccountInfo(new Account(uuid), false, true);
     }
   }
+
+  /** Reads the account stored in the given file, in either the binary or the old serialized format. */
+  static AccountRecord readRecord(Path file) throws IOException, ClassNotFoundException {
+    try (InputStream saveFile = new BufferedInputStream(Files.newInputStream(file))) {
+      return readRecord(saveFile, isBinary(saveFile));
+    }
+  }
+
+  private static AccountRecord readRecord(InputStream saveFile, boolean binary)
+      throws IOException, ClassNotFoundException {
+    if (binary) {
+      return AccountRecord.readBinary(new DataInputStream(saveFile));
+    }
+
+    try (ObjectInputStream legacySave = new ObjectInputStream(saveFile)) {
+      return AccountRecord.readSerialized(legacySave);
+    }
+  }
+
+  private static boolean isBinary(InputStream saveFile) throws IOException {
+    saveFile.mark(Integer.BYTES);
+
+    boolean binary = new DataInputStream(saveFile).readInt() == AccountRecord.MAGIC;
+
+    saveFile.reset();
+
+    return binary;
+  }
 }
@@ -0,0 +1,540 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import uk.co.notnull.ProxyChat.api.account.AccountInfo;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccountStorage;
+import uk.co.notnull.ProxyChat.util.LoggerHelper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Stores all accounts in an append-only log, split into memory mapped segment files of a fixed
+ * size.<br>
+ * Every save appends a new record for the account and the previous record becomes dead. An index
+ * from UUID to the latest record is rebuilt from the log on startup. Once the share of dead data
+ * in a full segment passes the compaction threshold, its live records are copied to the end of the
+ * log in the background and the segment is deleted.
+ *
+ * <p>Each record looks like this:
+ *
+ * <pre>
+ * int    length of the account data
+ * int    CRC32 of the account data
+ * long   UUID most significant bits
+ * long   UUID least significant bits
+ * byte[] account data, in the binary format of {@link AccountRecord}
+ * </pre>
+ *
+ * A length of 0 marks the end of a segment. Records with a broken checksum, for example from a
+ * crash during a write, end the segment as well.
+ */
+public class AccountLogStorage implements ProxyChatAccountStorage {
+  private static final String SEGMENT_PREFIX = "accounts-";
+  private static final String SEGMENT_EXTENSION = ".log";
+  private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 2;
+  private static final String IMPORT_MARKER = "imported-userdata";
+
+  private final Path directory;
+  private final int segmentSize;
+  private final double compactionThreshold;
+
+  private final Map<UUID, Location> index = new HashMap<>();
+  private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+  private Segment activeSegment;
+
+  private final ExecutorService compactor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("ProxyChat Account Log Compaction")
+              .setDaemon(true)
+              .build());
+  private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+  private long compactedSegments = 0;
+  private boolean closed = false;
+
+  /**
+   * @param directory Directory containing the segment files
+   * @param segmentSize Size of each segment file in bytes
+   * @param compactionThreshold Share of dead data (between 0 and 1) in a full segment that causes
+   *     it to be compacted
+   * @throws IOException If the existing segments could not be read
+   */
+  public AccountLogStorage(Path directory, int segmentSize, double compactionThreshold)
+      throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.compactionThreshold = compactionThreshold;
+
+    Files.createDirectories(directory);
+    openSegments();
+    scheduleCompaction();
+  }
+
+  @Override
+  public void save(ProxyChatAccount account) {
+    saveAll(Collections.singletonList(account));
+  }
+
+  /**
+   * Appends all accounts to the log, then forces the log to disk once, so saved accounts survive a
+   * crash of the machine.
+   */
+  @Override
+  public void saveAll(Collection<? extends ProxyChatAccount> accounts) {
+    boolean appended = false;
+
+    for (ProxyChatAccount account : accounts) {
+      try {
+        final byte[] data = encode(AccountRecord.of(account));
+
+        synchronized (this) {
+          if (closed) throw new IOException("Account log has been closed");
+
+          append(account.getUniqueId(), data);
+        }
+
+        appended = true;
+      } catch (IOException e) {
+        LoggerHelper.warning("Could not save player " + account.getUniqueId(), e);
+        account.markDirty();
+      }
+    }
+
+    if (!appended) return;
+
+    synchronized (this) {
+      if (!closed) {
+        activeSegment.force();
+      }
+    }
+
+    scheduleCompaction();
+  }
+
+  @Override
+  public AccountInfo load(UUID uuid) {
+    try {
+      final byte[] data;
+
+      synchronized (this) {
+        final Location location = index.get(uuid);
+
+        if (location == null) return new AccountInfo(new Account(uuid), false, true);
+
+        data = location.segment.read(location.offset + HEADER_SIZE, location.length);
+      }
+
+      return new AccountInfo(
+          AccountRecord.readBinary(new DataInputStream(new ByteArrayInputStream(data)))
+              .toAccount(uuid),
+          false,
+          false);
+    } catch (IOException e) {
+      LoggerHelper.warning("Could not load player " + uuid, e);
+
+      return new AccountInfo(new Account(uuid), false, true);
+    }
+  }
+
+  /**
+   * Copies all accounts from the one file per player layout of {@link AccountFileStorage} into the
+   * log. Accounts that are already in the log are skipped. Once done, a marker file is created in
+   * the log directory, so the import only happens once. The old files are left in place, so falling
+   * back to file storage when the log can't be opened doesn't treat every player as new.
+   *
+   * @param userDataDir The directory containing the .sav files
+   * @return The number of imported accounts
+   */
+  public int importFileStorage(Path userDataDir) throws IOException {
+    final Path marker = directory.resolve(IMPORT_MARKER);
+
+    if (!Files.isDirectory(userDataDir) || Files.exists(marker)) return 0;
+
+    int imported = 0;
+
+    try (Stream<Path> files = Files.list(userDataDir)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        final String fileName = file.getFileName().toString();
+
+        if (!fileName.endsWith(AccountFileStorage.FILE_EXTENSION)) continue;
+
+        final UUID uuid;
+
+        try {
+          uuid =
+              UUID.fromString(
+                  fileName.substring(
+                      0, fileName.length() - AccountFileStorage.FILE_EXTENSION.length()));
+        } catch (IllegalArgumentException e) {
+          continue;
+        }
+
+        synchronized (this) {
+          if (index.containsKey(uuid)) continue;
+        }
+
+        try {
+          final byte[] data = encode(AccountFileStorage.readRecord(file));
+
+          synchronized (this) {
+            append(uuid, data);
+          }
+
+          imported++;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+          LoggerHelper.warning("Could not import player " + uuid, e);
+        }
+      }
+    }
+
+    synchronized (this) {
+      activeSegment.force();
+    }
+
+    Files.createFile(marker);
+
+    return imported;
+  }
+
+  @Override
+  public void close() {
+    compactor.shutdown();
+
+    synchronized (this) {
+      closed = true;
+
+      for (Segment segment : segments.values()) {
+        segment.close();
+      }
+
+      segments.clear();
+      index.clear();
+    }
+  }
+
+  public synchronized String getStats() {
+    long totalBytes = 0;
+    long liveBytes = 0;
+
+    for (Segment segment : segments.values()) {
+      totalBytes += segment.writePosition;
+      liveBytes += segment.liveBytes;
+    }
+
+    return String.format(
+        "accounts=%d, segments=%d, live=%dKiB, total=%dKiB, compacted=%d",
+        index.size(),
+        segments.size(),
+        liveBytes / 1024,
+        totalBytes / 1024,
+        compactedSegments);
+  }
+
+  private static byte[] encode(AccountRecord record) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      record.writeBinary(out);
+    }
+
+    return bytes.toByteArray();
+  }
+
+  private static int checksum(byte[] data) {
+    final CRC32 crc = new CRC32();
+    crc.update(data);
+
+    return (int) crc.getValue();
+  }
+
+  private void openSegments() throws IOException {
+    final List<Integer> ids = new ArrayList<>();
+
+    try (Stream<Path> files = Files.list(directory)) {
+      files
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_EXTENSION))
+          .forEach(
+              name -> {
+                try {
+                  ids.add(
+                      Integer.parseInt(
+                          name.substring(
+                              SEGMENT_PREFIX.length(),
+                              name.length() - SEGMENT_EXTENSION.length())));
+                } catch (NumberFormatException ignored) {
+                  // Not one of ours
+                }
+              });
+    }
+
+    ids.sort(null);
+
+    // Replayed in order, so later records replace earlier ones in the index
+    for (int id : ids) {
+      final Segment segment = new Segment(id, getSegmentPath(id), segmentSize);
+
+      segments.put(id, segment);
+      segment.scan(this::indexRecord);
+    }
+
+    activeSegment = segments.isEmpty() ? newSegment() : segments.lastEntry().getValue();
+  }
+
+  private Path getSegmentPath(int id) {
+    return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_EXTENSION));
+  }
+
+  private Segment newSegment() throws IOException {
+    final int id = segments.isEmpty() ? 1 : (segments.lastKey() + 1);
+    final Segment segment = new Segment(id, getSegmentPath(id), segmentSize);
+
+    segments.put(id, segment);
+
+    return segment;
+  }
+
+  private void append(UUID uuid, byte[] data) throws IOException {
+    final int recordSize = HEADER_SIZE + data.length;
+
+    if (recordSize > segmentSize) {
+      throw new IOException("Account " + uuid + " is too large for a segment of the account log");
+    }
+
+    if (activeSegment.getRemaining() < recordSize) {
+      activeSegment.force();
+      activeSegment = newSegment();
+    }
+
+    final int offset = activeSegment.append(uuid, data, checksum(data));
+
+    indexRecord(uuid, new Location(activeSegment, offset, data.length));
+  }
+
+  private void indexRecord(UUID uuid, Location location) {
+    final Location previous = index.put(uuid, location);
+
+    location.segment.liveBytes += location.getRecordSize();
+
+    if (previous != null) {
+      previous.segment.liveBytes -= previous.getRecordSize();
+    }
+  }
+
+  private void scheduleCompaction() {
+    if (compactionScheduled.compareAndSet(false, true)) {
+      compactor.execute(this::compact);
+    }
+  }
+
+  @VisibleForTesting
+  void compact() {
+    compactionScheduled.set(false);
+
+    try {
+      while (true) {
+        // One segment at a time, so saves and loads are only blocked for a short while
+        synchronized (this) {
+          if (closed) return;
+
+          final Segment segment = findSegmentToCompact();
+
+          if (segment == null) return;
+
+          compactSegment(segment);
+        }
+      }
+    } catch (IOException e) {
+      LoggerHelper.error("Could not compact account log", e);
+    }
+  }
+
+  private Segment findSegmentToCompact() {
+    for (Segment segment : segments.values()) {
+      if (segment == activeSegment) continue;
+      if (segment.writePosition == 0) return segment;
+
+      final double deadRatio = 1.0 - ((double) segment.liveBytes / segment.writePosition);
+
+      if (deadRatio >= compactionThreshold) return segment;
+    }
+
+    return null;
+  }
+
+  private void compactSegment(Segment segment) throws IOException {
+    final List<Map.Entry<UUID, Location>> live = new ArrayList<>();
+
+    for (Map.Entry<UUID, Location> entry : index.entrySet()) {
+      if (entry.getValue().segment == segment) {
+        live.add(entry);
+      }
+    }
+
+    for (Map.Entry<UUID, Location> entry : live) {
+      final Location location = entry.getValue();
+
+      append(entry.getKey(), segment.read(location.offset + HEADER_SIZE, location.length));
+    }
+
+    // The copies have to be on disk before the originals are gone
+    activeSegment.force();
+    segments.remove(segment.id);
+    segment.close();
+    Files.deleteIfExists(segment.path);
+    compactedSegments++;
+  }
+
+  private static final class Location {
+    private final Segment segment;
+    private final int offset;
+    private final int length;
+
+    private Location(Segment segment, int offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    private int getRecordSize() {
+      return HEADER_SIZE + length;
+    }
+  }
+
+  private interface RecordConsumer {
+    void accept(UUID uuid, Location location);
+  }
+
+  private static final class Segment {
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePosition = 0;
+    private long liveBytes = 0;
+
+    private Segment(int id, Path path, int size) throws IOException {
+      this.id = id;
+      this.path = path;
+
+      channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      // Mapping past the end of the file grows it to the full segment size
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+    }
+
+    private void scan(RecordConsumer consumer) {
+      int position = 0;
+
+      while (position + HEADER_SIZE <= buffer.capacity()) {
+        final int length = buffer.getInt(position);
+
+        if ((length <= 0) || (position + HEADER_SIZE + length > buffer.capacity())) break;
+
+        final int checksum = buffer.getInt(position + Integer.BYTES);
+        final UUID uuid =
+            new UUID(
+                buffer.getLong(position + Integer.BYTES * 2),
+                buffer.getLong(position + Integer.BYTES * 2 + Long.BYTES));
+
+        if (checksum(read(position + HEADER_SIZE, length)) != checksum) {
+          LoggerHelper.warning("Ignoring damaged record at the end of account log segment " + path);
+          break;
+        }
+
+        consumer.accept(uuid, new Location(this, position, length));
+        position += HEADER_SIZE + length;
+      }
+
+      writePosition = position;
+    }
+
+    private int getRemaining() {
+      return buffer.capacity() - writePosition;
+    }
+
+    private int append(UUID uuid, byte[] data, int checksum) {
+      final int offset = writePosition;
+
+      buffer.putInt(offset + Integer.BYTES, checksum);
+      buffer.putLong(offset + Integer.BYTES * 2, uuid.getMostSignificantBits());
+      buffer.putLong(offset + Integer.BYTES * 2 + Long.BYTES, uuid.getLeastSignificantBits());
+      buffer.put(offset + HEADER_SIZE, data);
+      // The length goes in last, so a half written record reads as the end of the segment
+      buffer.putInt(offset, data.length);
+
+      writePosition += HEADER_SIZE + data.length;
+
+      return offset;
+    }
+
+    private byte[] read(int offset, int length) {
+      final byte[] data = new byte[length];
+      buffer.get(offset, data);
+
+      return data;
+    }
+
+    private void force() {
+      buffer.force();
+    }
+
+    private void close() {
+      force();
+
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LoggerHelper.warning("Could not close account log segment " + path, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The stored data of an account, and the formats it can be written in.<br>
+ * The binary format looks like this:
+ *
+ * <pre>
+ * int    magic ("PCAC")
+ * byte   format version
+ * byte   flags (vanished, messenger, social spy, local spy)
+ * byte   channel type ordinal
+ * long   muted until, as epoch millis
+ * UTF    name
+ * int    number of ignored players, followed by that many pairs of longs (UUID)
+ * </pre>
+ *
+ * The serialized format is the Java serialization based format of older versions, which can still
+ * be read.
+ */
+public class AccountRecord {
+  public static final int MAGIC = 0x50434143;
+  public static final byte VERSION = 1;
+
+  private static final int FLAG_VANISHED = 1;
+  private static final int FLAG_MESSENGER = 1 << 1;
+  private static final int FLAG_SOCIAL_SPY = 1 << 2;
+  private static final int FLAG_LOCAL_SPY = 1 << 3;
+  private static final ChannelType[] CHANNEL_TYPES = ChannelType.values();
+
+  private final String name;
+  private final ChannelType channelType;
+  private final boolean vanished;
+  private final boolean messenger;
+  private final boolean socialSpy;
+  private final boolean localSpy;
+  private final Collection<UUID> ignored;
+  private final Timestamp mutedUntil;
+
+  public AccountRecord(
+      String name,
+      ChannelType channelType,
+      boolean vanished,
+      boolean messenger,
+      boolean socialSpy,
+      boolean localSpy,
+      Collection<UUID> ignored,
+      Timestamp mutedUntil) {
+    this.name = name;
+    this.channelType = channelType;
+    this.vanished = vanished;
+    this.messenger = messenger;
+    this.socialSpy = socialSpy;
+    this.localSpy = localSpy;
+    this.ignored = ignored;
+    this.mutedUntil = mutedUntil;
+  }
+
+  public static AccountRecord of(ProxyChatAccount account) {
+    return new AccountRecord(
+        account.getName(),
+        account.getChannelType(),
+        account.isVanished(),
+        account.hasMessangerEnabled(),
+        getSocialSpySetting(account),
+        getLocalSpySetting(account),
+        account.getIgnored(),
+        account.getMutedUntil());
+  }
+
+  /**
+   * Returns the social spy setting to store. Not hasSocialSpyEnabled, which checks the permission
+   * and switches spying off, so saving an account after its player left could switch it off.
+   */
+  static boolean getSocialSpySetting(ProxyChatAccount account) {
+    return (account instanceof Account)
+        ? ((Account) account).getSocialSpySetting()
+        : account.hasSocialSpyEnabled();
+  }
+
+  /** Returns the local spy setting to store, see {@link #getSocialSpySetting(ProxyChatAccount)}. */
+  static boolean getLocalSpySetting(ProxyChatAccount account) {
+    return (account instanceof Account)
+        ? ((Account) account).getLocalSpySetting()
+        : account.hasLocalSpyEnabled();
+  }
+
+  public Account toAccount(UUID uuid) {
+    return new Account(
+        uuid, channelType, vanished, messenger, socialSpy, localSpy, ignored, mutedUntil);
+  }
+
+  public void writeBinary(DataOutput out) throws IOException {
+    int flags = 0;
+
+    if (vanished) flags |= FLAG_VANISHED;
+    if (messenger) flags |= FLAG_MESSENGER;
+    if (socialSpy) flags |= FLAG_SOCIAL_SPY;
+    if (localSpy) flags |= FLAG_LOCAL_SPY;
+
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeByte(flags);
+    out.writeByte(channelType.ordinal());
+    out.writeLong(mutedUntil.getTime());
+    out.writeUTF(name);
+
+    // Copied first, so the count always matches the entries even if the ignores change meanwhile
+    final List<UUID> ignoredCopy = new ArrayList<>(ignored);
+
+    out.writeInt(ignoredCopy.size());
+
+    for (UUID uuid : ignoredCopy) {
+      out.writeLong(uuid.getMostSignificantBits());
+      out.writeLong(uuid.getLeastSignificantBits());
+    }
+  }
+
+  /**
+   * Reads a record in the binary format, including the magic number.
+   *
+   * @throws IOException If the data isn't in the binary format or uses an unknown version
+   */
+  public static AccountRecord readBinary(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC) throw new IOException("Not a binary account record");
+
+    return readBinaryBody(in);
+  }
+
+  /** Reads a record in the binary format, after the magic number has already been read. */
+  public static AccountRecord readBinaryBody(DataInput in) throws IOException {
+    final byte version = in.readByte();
+
+    if (version != VERSION) throw new IOException("Unknown account record version " + version);
+
+    final int flags = in.readUnsignedByte();
+    final int channelOrdinal = in.readUnsignedByte();
+    final Timestamp mutedUntil = new Timestamp(in.readLong());
+    final String name = in.readUTF();
+    final int ignoredCount = in.readInt();
+
+    if (ignoredCount < 0) throw new IOException("Invalid ignore count " + ignoredCount);
+
+    final List<UUID> ignored = new ArrayList<>(ignoredCount);
+
+    for (int i = 0; i < ignoredCount; i++) {
+      ignored.add(new UUID(in.readLong(), in.readLong()));
+    }
+
+    return new AccountRecord(
+        name,
+        (channelOrdinal < CHANNEL_TYPES.length)
+            ? CHANNEL_TYPES[channelOrdinal]
+            : Account.defaultChannelType,
+        (flags & FLAG_VANISHED) != 0,
+        (flags & FLAG_MESSENGER) != 0,
+        (flags & FLAG_SOCIAL_SPY) != 0,
+        (flags & FLAG_LOCAL_SPY) != 0,
+        ignored,
+        mutedUntil);
+  }
+
+  public void writeSerialized(ObjectOutput out) throws IOException {
+    out.writeObject(name);
+    out.writeObject(channelType);
+    out.writeObject(vanished);
+    out.writeObject(messenger);
+    out.writeObject(socialSpy);
+    out.writeObject(localSpy);
+    out.writeObject(new LinkedBlockingQueue<>(ignored));
+    out.writeObject(mutedUntil);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static AccountRecord readSerialized(ObjectInput in)
+      throws IOException, ClassNotFoundException {
+    return new AccountRecord(
+        (String) in.readObject(),
+        (ChannelType) in.readObject(),
+        (boolean) in.readObject(),
+        (boolean) in.readObject(),
+        (boolean) in.readObject(),
+        (boolean) in.readObject(),
+        (BlockingQueue<UUID>) in.readObject(),
+        (Timestamp) in.readObject());
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public ChannelType getChannelType() {
+    return channelType;
+  }
+
+  public boolean isVanished() {
+    return vanished;
+  }
+
+  public boolean isMessenger() {
+    return messenger;
+  }
+
+  public boolean isSocialSpy() {
+    return socialSpy;
+  }
+
+  public boolean isLocalSpy() {
+    return localSpy;
+  }
+
+  public Collection<UUID> getIgnored() {
+    return ignored;
+  }
+
+  public Timestamp getMutedUntil() {
+    return mutedUntil;
+  }
+}
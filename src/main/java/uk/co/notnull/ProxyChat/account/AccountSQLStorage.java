@@ -22,30 +22,37 @@
 package uk.co.notnull.ProxyChat.account;
 
 import com.google.common.annotations.VisibleForTesting;
+import uk.co.notnull.ProxyChat.account.ConnectionPool.PooledConnection;
 import uk.co.notnull.ProxyChat.api.account.AccountInfo;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccountStorage;
 import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import uk.co.notnull.ProxyChat.util.DummyPlayer;
 import uk.co.notnull.ProxyChat.util.LoggerHelper;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public class AccountSQLStorage implements ProxyChatAccountStorage {
-  private final Connection connection;
+  // Number of accounts loaded per query by loadAll
+  private static final int LOAD_BATCH_SIZE = 100;
+
+  private final ConnectionPool pool;
   private final String tablePrefix;
 
   private final String tableAccounts;
@@ -61,11 +68,14 @@ public class AccountSQLStorage implements ProxyChatAccountStorage {
   private final String tableIgnoresColumnUser;
   private final String tableIgnoresColumnIgnores;
 
-  private PreparedStatement saveAccount;
-  private PreparedStatement loadAccount;
-  private PreparedStatement deleteIgnores;
-  private PreparedStatement addIgnore;
-  private PreparedStatement getIgnores;
+  private String saveAccountQuery;
+  private String loadAccountQuery;
+  private String loadAccountsQuery;
+  private String deleteIgnoresQuery;
+  private String deleteIgnoreQuery;
+  private String addIgnoreQuery;
+
+  private final LongAdder statementCount = new LongAdder();
 
   private static byte[] getBytesFromUUID(UUID uuid) {
     ByteBuffer bb = ByteBuffer.wrap(new byte[16]);
@@ -121,6 +131,48 @@ public class AccountSQLStorage implements ProxyChatAccountStorage {
       String tablePrefix,
       String options)
       throws SQLException {
+    this(
+        ip,
+        port,
+        database,
+        username,
+        password,
+        tablePrefix,
+        options,
+        ConnectionPool.Settings.DEFAULT);
+  }
+
+  public AccountSQLStorage(
+      String ip,
+      int port,
+      String database,
+      String username,
+      String password,
+      String tablePrefix,
+      Map<String, String> options,
+      ConnectionPool.Settings poolSettings)
+      throws SQLException {
+    this(
+        ip,
+        port,
+        database,
+        username,
+        password,
+        tablePrefix,
+        optionsMapToString(options),
+        poolSettings);
+  }
+
+  public AccountSQLStorage(
+      String ip,
+      int port,
+      String database,
+      String username,
+      String password,
+      String tablePrefix,
+      String options,
+      ConnectionPool.Settings poolSettings)
+      throws SQLException {
     this.tablePrefix = tablePrefix;
 
     tableAccounts = getTableName("Accounts");
@@ -145,111 +197,224 @@ public class AccountSQLStorage implements ProxyChatAccountStorage {
             + database
             + (options.isEmpty() ? "" : ('?' + options));
 
-    connection = DriverManager.getConnection(host, username, password);
+    pool = new ConnectionPool(host, username, password, poolSettings);
 
     prepareTables();
-    prepareStatements();
+    prepareQueries();
   }
 
 	@Override
 	public void save(ProxyChatAccount account) {
-		try {
-			byte[] uuidBytes = getBytesFromUUID(account.getUniqueId());
-			// deleteIgnores
-			deleteIgnores.setBytes(1, uuidBytes);
-			deleteIgnores.execute();
-			deleteIgnores.clearParameters();
-			// saveAccount
-			saveAccount.setBytes(1, uuidBytes);
-			saveAccount.setString(2, account.getName());
-			saveAccount.setString(3, account.getChannelType().name());
-			saveAccount.setBoolean(4, account.isVanished());
-			saveAccount.setBoolean(5, account.hasMessangerEnabled());
-			saveAccount.setBoolean(6, account.hasSocialSpyEnabled());
-			saveAccount.setBoolean(7, account.hasLocalSpyEnabled());
-			saveAccount.setTimestamp(8, account.getMutedUntil());
-			saveAccount.executeUpdate();
-			saveAccount.clearParameters();
-			// addIgnore
-			addIgnore.setBytes(1, uuidBytes);
-			for (UUID uuid : account.getIgnored()) {
-				addIgnore.setBytes(2, getBytesFromUUID(uuid));
-				addIgnore.executeUpdate();
+		saveAll(Collections.singletonList(account));
+	}
+
+	@Override
+	public void saveAll(Collection<? extends ProxyChatAccount> accounts) {
+		if (accounts.isEmpty()) return;
+
+		Map<Account, Account.IgnoreChanges> ignoreChanges = new HashMap<>();
+
+		try (PooledConnection connection = pool.borrow()) {
+			PreparedStatement saveAccount = connection.prepareStatement(saveAccountQuery);
+			PreparedStatement deleteIgnores = connection.prepareStatement(deleteIgnoresQuery);
+			PreparedStatement deleteIgnore = connection.prepareStatement(deleteIgnoreQuery);
+			PreparedStatement addIgnore = connection.prepareStatement(addIgnoreQuery);
+			int deleteIgnoresCount = 0;
+			int deleteIgnoreCount = 0;
+			int addIgnoreCount = 0;
+
+			for (ProxyChatAccount account : accounts) {
+				byte[] uuidBytes = getBytesFromUUID(account.getUniqueId());
+				// saveAccount
+				saveAccount.setBytes(1, uuidBytes);
+				saveAccount.setString(2, account.getName());
+				saveAccount.setString(3, account.getChannelType().name());
+				saveAccount.setBoolean(4, account.isVanished());
+				saveAccount.setBoolean(5, account.hasMessangerEnabled());
+				saveAccount.setBoolean(6, AccountRecord.getSocialSpySetting(account));
+				saveAccount.setBoolean(7, AccountRecord.getLocalSpySetting(account));
+				saveAccount.setTimestamp(8, account.getMutedUntil());
+				saveAccount.addBatch();
+
+				if (account instanceof Account ownAccount) {
+					// Only write what changed since the account was loaded or last saved
+					Account.IgnoreChanges changes = ownAccount.takeIgnoreChanges();
+					ignoreChanges.put(ownAccount, changes);
+
+					// deleteIgnore
+					for (UUID uuid : changes.getRemoved()) {
+						deleteIgnore.setBytes(1, uuidBytes);
+						deleteIgnore.setBytes(2, getBytesFromUUID(uuid));
+						deleteIgnore.addBatch();
+						deleteIgnoreCount++;
+					}
+					// addIgnore
+					for (UUID uuid : changes.getAdded()) {
+						addIgnore.setBytes(1, uuidBytes);
+						addIgnore.setBytes(2, getBytesFromUUID(uuid));
+						addIgnore.addBatch();
+						addIgnoreCount++;
+					}
+				} else {
+					// deleteIgnores
+					deleteIgnores.setBytes(1, uuidBytes);
+					deleteIgnores.addBatch();
+					deleteIgnoresCount++;
+					// addIgnore
+					for (UUID uuid : account.getIgnored()) {
+						addIgnore.setBytes(1, uuidBytes);
+						addIgnore.setBytes(2, getBytesFromUUID(uuid));
+						addIgnore.addBatch();
+						addIgnoreCount++;
+					}
+				}
 			}
-			addIgnore.clearParameters();
+
+			// The whole batch is written in one transaction, which the pool rolls back if anything fails
+			connection.getConnection().setAutoCommit(false);
+			executeBatch(saveAccount, accounts.size());
+			executeBatch(deleteIgnores, deleteIgnoresCount);
+			executeBatch(deleteIgnore, deleteIgnoreCount);
+			executeBatch(addIgnore, addIgnoreCount);
+			connection.getConnection().commit();
 		} catch (SQLException e) {
-			LoggerHelper.error("Could not save user " + account.getUniqueId() + " to database!", e);
+			ignoreChanges.forEach(Account::restoreIgnoreChanges);
+
+			if (accounts.size() > 1) {
+				// Retry one by one, so a single broken account doesn't stop the others from saving
+				LoggerHelper.warning("Could not save " + accounts.size() + " users as a batch. Saving them individually", e);
+				accounts.forEach(this::save);
+			} else {
+				ProxyChatAccount account = accounts.iterator().next();
+
+				LoggerHelper.error("Could not save user " + account.getUniqueId() + " to database!", e);
+				account.markDirty();
+			}
 		}
 	}
 
 	@Override
 	public AccountInfo load(UUID uuid) {
-		try {
-			byte[] uuidBytes = getBytesFromUUID(uuid);
+		try (PooledConnection connection = pool.borrow()) {
+			Map<UUID, AccountRecord> records = new HashMap<>(2);
 			// loadAccount
-			loadAccount.setBytes(1, uuidBytes);
+			PreparedStatement loadAccount = connection.prepareStatement(loadAccountQuery);
+			loadAccount.setBytes(1, getBytesFromUUID(uuid));
+			statementCount.increment();
 			try (ResultSet resultLoadAccount = loadAccount.executeQuery()) {
-				loadAccount.clearParameters();
-				if (!resultLoadAccount.next()) return new AccountInfo(new Account(uuid), true, true);
-				// getIgnores
-				getIgnores.setBytes(1, uuidBytes);
-				try (ResultSet resultGetIgnores = getIgnores.executeQuery()) {
-					getIgnores.clearParameters();
-					BlockingQueue<UUID> ignores = new LinkedBlockingQueue<>();
-					while (resultGetIgnores.next()) {
-						ignores.add(getUUIDFromBytes(resultGetIgnores.getBytes(tableIgnoresColumnIgnores)));
-					}
-					return new AccountInfo(new Account(uuid, ChannelType.valueOf(resultLoadAccount.getString(tableAccountsColumnChannelType)), resultLoadAccount.getBoolean(tableAccountsColumnVanished), resultLoadAccount.getBoolean(tableAccountsColumnMessenger), resultLoadAccount.getBoolean(tableAccountsColumnSocialSpy), resultLoadAccount.getBoolean(tableAccountsColumnLocalSpy), ignores, resultLoadAccount.getTimestamp(tableAccountsColumnMutedUntil)), true, false);
-				}
+				readAccounts(resultLoadAccount, records);
 			}
+			return toAccountInfo(uuid, records.get(uuid));
 		} catch (SQLException e) {
 			LoggerHelper.error("Could not load user " + uuid + " from database!", e);
 			return new AccountInfo(new Account(uuid), true, true);
 		}
 	}
 
+	@Override
+	public Map<UUID, AccountInfo> loadAll(Collection<UUID> uuids) {
+		List<UUID> uuidList = new ArrayList<>(uuids);
+		Map<UUID, AccountRecord> records = new HashMap<>();
+		Map<UUID, AccountInfo> accounts = new HashMap<>();
+
+		if (uuidList.isEmpty()) return accounts;
+
+		try (PooledConnection connection = pool.borrow()) {
+			// loadAccounts
+			PreparedStatement loadAccounts = connection.prepareStatement(loadAccountsQuery);
+			for (int start = 0; start < uuidList.size(); start += LOAD_BATCH_SIZE) {
+				for (int i = 0; i < LOAD_BATCH_SIZE; i++) {
+					// Unused parameters repeat the last UUID, so every chunk can use the same statement
+					UUID uuid = uuidList.get(Math.min(start + i, uuidList.size() - 1));
+					loadAccounts.setBytes(i + 1, getBytesFromUUID(uuid));
+				}
+				statementCount.increment();
+				try (ResultSet resultLoadAccounts = loadAccounts.executeQuery()) {
+					readAccounts(resultLoadAccounts, records);
+				}
+			}
+		} catch (SQLException e) {
+			LoggerHelper.error("Could not load " + uuidList.size() + " users from database!", e);
+			// Accounts of chunks that were read before the error are still used
+			for (UUID uuid : uuidList) {
+				AccountRecord record = records.get(uuid);
+				accounts.put(uuid, (record == null) ? new AccountInfo(new Account(uuid), true, true) : toAccountInfo(uuid, record));
+			}
+			return accounts;
+		}
+
+		for (UUID uuid : uuidList) {
+			accounts.put(uuid, toAccountInfo(uuid, records.get(uuid)));
+		}
+
+		return accounts;
+	}
+
+	private AccountInfo toAccountInfo(UUID uuid, AccountRecord record) {
+		if (record == null) return new AccountInfo(new Account(uuid), true, true);
+
+		Account account = record.toAccount(uuid);
+		// Only written back to store a changed name. Accounts of offline players don't know their name
+		boolean nameChanged = !(account.getPlayer() instanceof DummyPlayer) && !account.getName().equals(record.getName());
+
+		return new AccountInfo(account, nameChanged, false);
+	}
+
+	/**
+	 * Reads the rows of an account query. Each account has one row per ignored player, or a single
+	 * row with no ignored player.
+	 */
+	private void readAccounts(ResultSet result, Map<UUID, AccountRecord> records) throws SQLException {
+		while (result.next()) {
+			UUID uuid = getUUIDFromBytes(result.getBytes(tableAccountsColumnUUID));
+			AccountRecord record = records.get(uuid);
+
+			if (record == null) {
+				record = new AccountRecord(result.getString(tableAccountsColumnUserName), ChannelType.valueOf(result.getString(tableAccountsColumnChannelType)), result.getBoolean(tableAccountsColumnVanished), result.getBoolean(tableAccountsColumnMessenger), result.getBoolean(tableAccountsColumnSocialSpy), result.getBoolean(tableAccountsColumnLocalSpy), new ArrayList<>(), result.getTimestamp(tableAccountsColumnMutedUntil));
+				records.put(uuid, record);
+			}
+
+			byte[] ignored = result.getBytes(tableIgnoresColumnIgnores);
+
+			if (ignored != null) {
+				record.getIgnored().add(getUUIDFromBytes(ignored));
+			}
+		}
+	}
+
   @Override
   public boolean requiresConsoleAccountSave() {
     return true;
   }
 
-  private boolean isConnectionActive() {
-    try {
-      return (connection != null) && connection.isValid(0);
-    } catch (SQLException e) {
-      e.printStackTrace();
-
-      return false;
-    }
+  @Override
+  public void close() {
+    pool.close();
   }
 
-  private Statement getStatement() throws SQLException {
-    if (!isConnectionActive()) throw new SQLException("MySQL-connection is not active!");
-
-    return connection.createStatement();
+  public ConnectionPool.Stats getPoolStats() {
+    return pool.getStats();
   }
 
-  private PreparedStatement getPreparedStatement(final String statement) throws SQLException {
-    return connection.prepareStatement(statement);
+  /**
+   * Returns the number of statements sent to the database for loading and saving accounts. A
+   * batch counts as a single statement.
+   */
+  public long getStatementCount() {
+    return statementCount.sum();
   }
 
-  @SuppressWarnings("unused")
-  private ResultSet executeQuery(final String query) throws SQLException {
-    try (Statement statement = getStatement()) {
-  	  return statement.executeQuery(query);
-    }
-  }
+  private void executeBatch(PreparedStatement statement, int batchSize) throws SQLException {
+    if (batchSize == 0) return;
 
-  private boolean executeStatement(final String query) throws SQLException {
-    try (Statement statement = getStatement()) {
-  	  return statement.execute(query);
-    }
+    statement.executeBatch();
+    statementCount.increment();
   }
 
-  @SuppressWarnings("unused")
-  private int executeUpdate(final String query) throws SQLException {
-    try (Statement statement = getStatement()) {
-  	  return statement.executeUpdate(query);
+  private boolean executeStatement(final String query) throws SQLException {
+    try (PooledConnection connection = pool.borrow();
+        Statement statement = connection.createStatement()) {
+      return statement.execute(query);
     }
   }
 
@@ -326,100 +491,109 @@ public class AccountSQLStorage implements ProxyChatAccountStorage {
     }
   }
 
-  private void prepareStatements() {
-    try {
-      final String saveAccountStr =
-          "INSERT INTO "
-              + tableAccounts
-              + " ("
-              + tableAccountsColumnUUID
-              + ", "
-              + tableAccountsColumnUserName
-              + ", "
-              + tableAccountsColumnChannelType
-              + ", "
-              + tableAccountsColumnVanished
-              + ", "
-              + tableAccountsColumnMessenger
-              + ", "
-              + tableAccountsColumnSocialSpy
-              + ", "
-              + tableAccountsColumnLocalSpy
-              + ", "
-              + tableAccountsColumnMutedUntil
-              + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
-              + tableAccountsColumnUserName
-              + " = VALUES("
-              + tableAccountsColumnUserName
-              + "), "
-              + tableAccountsColumnChannelType
-              + " = VALUES("
-              + tableAccountsColumnChannelType
-              + "), "
-              + tableAccountsColumnVanished
-              + " = VALUES("
-              + tableAccountsColumnVanished
-              + "), "
-              + tableAccountsColumnMessenger
-              + " = VALUES("
-              + tableAccountsColumnMessenger
-              + "), "
-              + tableAccountsColumnSocialSpy
-              + " = VALUES("
-              + tableAccountsColumnSocialSpy
-              + "), "
-              + tableAccountsColumnLocalSpy
-              + " = VALUES("
-              + tableAccountsColumnLocalSpy
-              + "), "
-              + tableAccountsColumnMutedUntil
-              + " = VALUES("
-              + tableAccountsColumnMutedUntil
-              + ")";
-      final String loadAccountStr =
-          "SELECT "
-              + tableAccountsColumnChannelType
-              + ", "
-              + tableAccountsColumnVanished
-              + ", "
-              + tableAccountsColumnMessenger
-              + ", "
-              + tableAccountsColumnSocialSpy
-              + ", "
-              + tableAccountsColumnLocalSpy
-              + ", "
-              + tableAccountsColumnMutedUntil
-              + " FROM "
-              + tableAccounts
-              + " WHERE "
-              + tableAccountsColumnUUID
-              + " = ? LIMIT 1";
-      final String deleteIgnoresStr =
-          "DELETE FROM " + tableIgnores + " WHERE " + tableIgnoresColumnUser + " = ?";
-      final String addIgnoreStr =
-          "INSERT INTO "
-              + tableIgnores
-              + " ("
-              + tableIgnoresColumnUser
-              + ", "
-              + tableIgnoresColumnIgnores
-              + ") VALUES (?, ?)";
-      final String getIgnoresStr =
-          "SELECT "
-              + tableIgnoresColumnIgnores
-              + " FROM "
-              + tableIgnores
-              + " WHERE "
-              + tableIgnoresColumnUser
-              + " = ? ";
+  private void prepareQueries() {
+    saveAccountQuery =
+        "INSERT INTO "
+            + tableAccounts
+            + " ("
+            + tableAccountsColumnUUID
+            + ", "
+            + tableAccountsColumnUserName
+            + ", "
+            + tableAccountsColumnChannelType
+            + ", "
+            + tableAccountsColumnVanished
+            + ", "
+            + tableAccountsColumnMessenger
+            + ", "
+            + tableAccountsColumnSocialSpy
+            + ", "
+            + tableAccountsColumnLocalSpy
+            + ", "
+            + tableAccountsColumnMutedUntil
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+            + tableAccountsColumnUserName
+            + " = VALUES("
+            + tableAccountsColumnUserName
+            + "), "
+            + tableAccountsColumnChannelType
+            + " = VALUES("
+            + tableAccountsColumnChannelType
+            + "), "
+            + tableAccountsColumnVanished
+            + " = VALUES("
+            + tableAccountsColumnVanished
+            + "), "
+            + tableAccountsColumnMessenger
+            + " = VALUES("
+            + tableAccountsColumnMessenger
+            + "), "
+            + tableAccountsColumnSocialSpy
+            + " = VALUES("
+            + tableAccountsColumnSocialSpy
+            + "), "
+            + tableAccountsColumnLocalSpy
+            + " = VALUES("
+            + tableAccountsColumnLocalSpy
+            + "), "
+            + tableAccountsColumnMutedUntil
+            + " = VALUES("
+            + tableAccountsColumnMutedUntil
+            + ")";
+    loadAccountQuery = buildLoadAccountsQuery(1);
+    loadAccountsQuery = buildLoadAccountsQuery(LOAD_BATCH_SIZE);
+    deleteIgnoresQuery =
+        "DELETE FROM " + tableIgnores + " WHERE " + tableIgnoresColumnUser + " = ?";
+    deleteIgnoreQuery =
+        "DELETE FROM "
+            + tableIgnores
+            + " WHERE "
+            + tableIgnoresColumnUser
+            + " = ? AND "
+            + tableIgnoresColumnIgnores
+            + " = ?";
+    addIgnoreQuery =
+        "INSERT IGNORE INTO "
+            + tableIgnores
+            + " ("
+            + tableIgnoresColumnUser
+            + ", "
+            + tableIgnoresColumnIgnores
+            + ") VALUES (?, ?)";
+  }
 
-      saveAccount = getPreparedStatement(saveAccountStr);
-      loadAccount = getPreparedStatement(loadAccountStr);
-      deleteIgnores = getPreparedStatement(deleteIgnoresStr);
-      addIgnore = getPreparedStatement(addIgnoreStr);
-      getIgnores = getPreparedStatement(getIgnoresStr);
-    } catch (SQLException e) {
-      LoggerHelper.error("Could not prepare statements!", e);
-    }
+  private String buildLoadAccountsQuery(int count) {
+    // Joined, so an account and its ignores are fetched in a single round trip
+    return "SELECT A."
+        + tableAccountsColumnUUID
+        + ", A."
+        + tableAccountsColumnUserName
+        + ", A."
+        + tableAccountsColumnChannelType
+        + ", A."
+        + tableAccountsColumnVanished
+        + ", A."
+        + tableAccountsColumnMessenger
+        + ", A."
+        + tableAccountsColumnSocialSpy
+        + ", A."
+        + tableAccountsColumnLocalSpy
+        + ", A."
+        + tableAccountsColumnMutedUntil
+        + ", I."
+        + tableIgnoresColumnIgnores
+        + " FROM "
+        + tableAccounts
+        + " A LEFT JOIN "
+        + tableIgnores
+        + " I ON I."
+        + tableIgnoresColumnUser
+        + " = A."
+        + tableAccountsColumnUUID
+        + " WHERE A."
+        + tableAccountsColumnUUID
+        + " IN ("
+        + String.join(", ", Collections.nCopies(count, "?"))
+        + ")";
   }
 }
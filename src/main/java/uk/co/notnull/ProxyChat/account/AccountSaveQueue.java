@@ -0,0 +1,197 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import uk.co.notnull.ProxyChat.api.account.AccountManager;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.util.LoggerHelper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects accounts that need saving and writes them to the account storage in batches, either
+ * periodically or once enough accounts are waiting.<br>
+ * Accounts without unsaved changes are skipped, and an account queued several times before a flush
+ * is only written once.
+ */
+public class AccountSaveQueue {
+  private final ConcurrentMap<UUID, ProxyChatAccount> pending = new ConcurrentHashMap<>();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("ProxyChat Account Save Queue")
+              .setDaemon(true)
+              .build());
+  private ScheduledFuture<?> flushTask;
+  private volatile int batchSize = 100;
+
+  private final LongAdder queued = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder written = new LongAdder();
+  private final LongAdder flushes = new LongAdder();
+
+  /**
+   * (Re)starts the periodic flush with new settings.
+   *
+   * @param flushIntervalMillis Time between periodic flushes
+   * @param batchSize Number of waiting accounts that triggers an early flush. Also the maximum
+   *     number of accounts written in one batch
+   */
+  public synchronized void configure(long flushIntervalMillis, int batchSize) {
+    this.batchSize = Math.max(1, batchSize);
+
+    if (flushTask != null) {
+      flushTask.cancel(false);
+    }
+
+    flushTask =
+        executor.scheduleWithFixedDelay(
+            this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public void enqueue(ProxyChatAccount account) {
+    if (!account.isDirty()) {
+      skipped.increment();
+      return;
+    }
+
+    queued.increment();
+    pending.put(account.getUniqueId(), account);
+
+    if ((pending.size() >= batchSize) && flushScheduled.compareAndSet(false, true)) {
+      executor.execute(this::flushSafely);
+    }
+  }
+
+  public boolean isPending(UUID uuid) {
+    return pending.containsKey(uuid);
+  }
+
+  /**
+   * Writes the account with the given UUID right away if it is still waiting to be saved. If it is
+   * part of a flush that is already running, this waits for that flush to finish instead.<br>
+   * Used before loading an account, so the load never reads older data than what is queued.
+   */
+  public void flush(UUID uuid) {
+    if (!pending.containsKey(uuid)) return;
+
+    flushLock.lock();
+
+    try {
+      final ProxyChatAccount account = pending.get(uuid);
+
+      if (account != null) {
+        write(Collections.singletonList(account));
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /** Writes all accounts that are currently waiting, blocking until they are written. */
+  public void flush() {
+    flushScheduled.set(false);
+    flushLock.lock();
+
+    try {
+      final List<ProxyChatAccount> accounts = new ArrayList<>(pending.values());
+
+      for (int i = 0; i < accounts.size(); i += batchSize) {
+        write(accounts.subList(i, Math.min(i + batchSize, accounts.size())));
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Removes all waiting accounts without writing them, so they can be written elsewhere. If a flush
+   * is running, this waits for it to finish first.
+   *
+   * @return The accounts that were waiting
+   */
+  public List<ProxyChatAccount> drain() {
+    flushLock.lock();
+
+    try {
+      final List<ProxyChatAccount> accounts = new ArrayList<>(pending.values());
+      accounts.forEach(account -> pending.remove(account.getUniqueId(), account));
+
+      return accounts;
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  public String getStats() {
+    return String.format(
+        "pending=%d, queued=%d, skipped=%d, written=%d, flushes=%d",
+        pending.size(), queued.sum(), skipped.sum(), written.sum(), flushes.sum());
+  }
+
+  private void flushSafely() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LoggerHelper.error("Could not flush queued account saves", e);
+    }
+  }
+
+  private void write(List<ProxyChatAccount> accounts) {
+    // Cleared before writing, so changes made during the write mark the account dirty again
+    accounts.forEach(ProxyChatAccount::markClean);
+    AccountManager.getAccountStorage().saveAll(accounts);
+
+    for (ProxyChatAccount account : accounts) {
+      // Keep accounts that changed again or failed to save for the next flush
+      pending.computeIfPresent(
+          account.getUniqueId(),
+          (uuid, queuedAccount) ->
+              ((queuedAccount == account) && !account.isDirty()) ? null : queuedAccount);
+    }
+
+    written.add(accounts.size());
+    flushes.increment();
+  }
+}
@@ -0,0 +1,563 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import uk.co.notnull.ProxyChat.util.LoggerHelper;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small bounded JDBC connection pool.<br>
+ * Connections are handed out as {@link PooledConnection}s, which return themselves to the pool when
+ * closed and cache their prepared statements, so statements are never shared between threads.
+ */
+public class ConnectionPool implements AutoCloseable {
+  // Connections that were used within this time are assumed to still be alive
+  private static final long VALIDATE_AFTER_IDLE_MILLIS = 5000L;
+  private static final long HOUSEKEEPING_INTERVAL_SECONDS = 30L;
+
+  private final String url;
+  private final String username;
+  private final String password;
+  private final Settings settings;
+
+  private final BlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+  private final Set<PooledConnection> leasedConnections = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger openConnections = new AtomicInteger();
+  private final Semaphore leases;
+  private final ScheduledExecutorService housekeeper;
+  private volatile boolean closed = false;
+
+  private final LongAdder borrowed = new LongAdder();
+  private final LongAdder created = new LongAdder();
+  private final LongAdder validationFailures = new LongAdder();
+  private final LongAdder leaks = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+
+  public ConnectionPool(String url, String username, String password, Settings settings)
+      throws SQLException {
+    this.url = url;
+    this.username = username;
+    this.password = password;
+    this.settings = settings;
+
+    leases = new Semaphore(settings.getMaxSize(), true);
+
+    for (int i = 0; i < settings.getMinSize(); i++) {
+      idleConnections.addLast(openConnection());
+    }
+
+    housekeeper =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("ProxyChat Connection Pool Housekeeper")
+                .setDaemon(true)
+                .build());
+    housekeeper.scheduleWithFixedDelay(
+        this::housekeep,
+        HOUSEKEEPING_INTERVAL_SECONDS,
+        HOUSEKEEPING_INTERVAL_SECONDS,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * Borrows a connection from the pool, opening a new one if none are idle and the pool isn't at
+   * its maximum size. The connection must be closed to return it to the pool.
+   *
+   * @return A connection that is exclusively owned by the caller until it is closed
+   * @throws SQLException If the pool is closed, no connection became available in time or a new
+   *     connection could not be opened
+   */
+  public PooledConnection borrow() throws SQLException {
+    if (closed) throw new SQLException("Connection pool has been closed!");
+
+    final long start = System.nanoTime();
+
+    try {
+      if (!leases.tryAcquire(settings.getConnectionTimeout(), TimeUnit.MILLISECONDS)) {
+        timeouts.increment();
+
+        throw new SQLException(
+            "Timed out after "
+                + settings.getConnectionTimeout()
+                + "ms waiting for a database connection!");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+      throw new SQLException("Interrupted while waiting for a database connection!", e);
+    }
+
+    waitNanos.add(System.nanoTime() - start);
+
+    try {
+      PooledConnection connection;
+
+      while ((connection = idleConnections.pollFirst()) != null) {
+        if (isUsable(connection)) break;
+
+        discard(connection);
+      }
+
+      if (connection == null) {
+        connection = openConnection();
+      }
+
+      connection.lease(settings.getLeakDetectionThreshold() > 0);
+      leasedConnections.add(connection);
+      borrowed.increment();
+
+      return connection;
+    } catch (SQLException | RuntimeException e) {
+      leases.release();
+
+      throw e;
+    }
+  }
+
+  public Stats getStats() {
+    return new Stats(
+        openConnections.get(),
+        idleConnections.size(),
+        leasedConnections.size(),
+        leases.getQueueLength(),
+        settings.getMaxSize(),
+        borrowed.sum(),
+        created.sum(),
+        validationFailures.sum(),
+        leaks.sum(),
+        timeouts.sum(),
+        waitNanos.sum());
+  }
+
+  /**
+   * Closes all idle connections. Connections that are currently borrowed get closed as soon as they
+   * are returned.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    housekeeper.shutdownNow();
+
+    PooledConnection connection;
+
+    while ((connection = idleConnections.pollFirst()) != null) {
+      discard(connection);
+    }
+  }
+
+  void release(PooledConnection connection) {
+    // Closing a connection twice must not hand out a second permit
+    if (!leasedConnections.remove(connection)) return;
+
+    try {
+      if (closed || !connection.reset()) {
+        discard(connection);
+      } else {
+        // LIFO, so that busy periods keep reusing the same connections and the rest can idle out
+        idleConnections.addFirst(connection);
+      }
+    } finally {
+      leases.release();
+    }
+  }
+
+  private PooledConnection openConnection() throws SQLException {
+    final PooledConnection connection =
+        new PooledConnection(this, DriverManager.getConnection(url, username, password));
+
+    openConnections.incrementAndGet();
+    created.increment();
+
+    return connection;
+  }
+
+  private void discard(PooledConnection connection) {
+    openConnections.decrementAndGet();
+    connection.closeQuietly();
+  }
+
+  private boolean isUsable(PooledConnection connection) {
+    if (connection.getIdleMillis() < VALIDATE_AFTER_IDLE_MILLIS) return true;
+
+    try {
+      if (connection.getConnection().isValid(settings.getValidationTimeoutSeconds())) return true;
+    } catch (SQLException ignored) {
+      // Treated the same as an invalid connection
+    }
+
+    validationFailures.increment();
+
+    return false;
+  }
+
+  private void housekeep() {
+    try {
+      detectLeaks();
+      evictIdleConnections();
+      fillToMinimumSize();
+    } catch (RuntimeException e) {
+      LoggerHelper.warning("Error during connection pool housekeeping", e);
+    }
+  }
+
+  private void detectLeaks() {
+    final long threshold = settings.getLeakDetectionThreshold();
+
+    if (threshold <= 0) return;
+
+    for (PooledConnection connection : leasedConnections) {
+      if ((connection.getLeasedMillis() > threshold) && connection.markLeakReported()) {
+        leaks.increment();
+
+        LoggerHelper.warning(
+            "A database connection has been in use for over "
+                + threshold
+                + "ms. This is likely a connection leak!",
+            connection.getLeaseTrace());
+      }
+    }
+  }
+
+  private void evictIdleConnections() {
+    final Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+    final Deque<PooledConnection> validated = new ArrayDeque<>();
+
+    // Walk from the least recently used end of the deque
+    while (iterator.hasNext()) {
+      final PooledConnection connection = iterator.next();
+      final boolean expired =
+          (openConnections.get() > settings.getMinSize())
+              && (connection.getIdleMillis() > settings.getIdleTimeout());
+
+      if (!expired && (connection.getIdleMillis() < VALIDATE_AFTER_IDLE_MILLIS)) continue;
+
+      // Taken out before validating or closing it, so it can't be borrowed in the meantime. If
+      // this fails, it has just been borrowed
+      if (!idleConnections.remove(connection)) continue;
+
+      if (expired || !isUsable(connection)) {
+        discard(connection);
+      } else {
+        validated.addFirst(connection);
+      }
+    }
+
+    // Put back at the least recently used end, in their previous order
+    validated.forEach(idleConnections::addLast);
+  }
+
+  private void fillToMinimumSize() {
+    while (!closed && (openConnections.get() < settings.getMinSize())) {
+      try {
+        idleConnections.addLast(openConnection());
+      } catch (SQLException e) {
+        LoggerHelper.warning("Could not open database connection", e);
+
+        return;
+      }
+    }
+  }
+
+  /** A connection borrowed from a {@link ConnectionPool}. Closing it returns it to the pool. */
+  public static final class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private volatile long lastReleased = System.currentTimeMillis();
+    private volatile long leasedAt;
+    private volatile Throwable leaseTrace;
+    private volatile boolean leakReported;
+
+    private PooledConnection(ConnectionPool pool, Connection connection) {
+      this.pool = pool;
+      this.connection = connection;
+    }
+
+    public Connection getConnection() {
+      return connection;
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL. Statements are cached per connection and
+     * reused on later borrows, with their parameters and batches cleared.
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+      PreparedStatement statement = statements.get(sql);
+
+      if ((statement == null) || statement.isClosed()) {
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+      } else {
+        statement.clearParameters();
+        statement.clearBatch();
+      }
+
+      return statement;
+    }
+
+    public Statement createStatement() throws SQLException {
+      return connection.createStatement();
+    }
+
+    @Override
+    public void close() {
+      pool.release(this);
+    }
+
+    private void lease(boolean recordTrace) {
+      leasedAt = System.currentTimeMillis();
+      leaseTrace = recordTrace ? new Throwable("Connection was borrowed here") : null;
+      leakReported = false;
+    }
+
+    private boolean reset() {
+      try {
+        if (!connection.getAutoCommit()) {
+          connection.rollback();
+          connection.setAutoCommit(true);
+        }
+
+        lastReleased = System.currentTimeMillis();
+
+        return true;
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+
+    private long getIdleMillis() {
+      return System.currentTimeMillis() - lastReleased;
+    }
+
+    private long getLeasedMillis() {
+      return System.currentTimeMillis() - leasedAt;
+    }
+
+    private Throwable getLeaseTrace() {
+      return leaseTrace;
+    }
+
+    private boolean markLeakReported() {
+      if (leakReported) return false;
+
+      leakReported = true;
+
+      return true;
+    }
+
+    private void closeQuietly() {
+      try {
+        connection.close();
+      } catch (SQLException ignored) {
+        // Nothing left to do with a broken connection
+      }
+
+      statements.clear();
+    }
+  }
+
+  public static final class Settings {
+    public static final Settings DEFAULT = new Settings(1, 4, 10000L, 600000L, 5, 30000L);
+
+    private final int minSize;
+    private final int maxSize;
+    private final long connectionTimeout;
+    private final long idleTimeout;
+    private final int validationTimeoutSeconds;
+    private final long leakDetectionThreshold;
+
+    /**
+     * @param minSize Number of connections that are kept open at all times
+     * @param maxSize Maximum number of connections open at the same time
+     * @param connectionTimeout Milliseconds to wait for a free connection before failing
+     * @param idleTimeout Milliseconds after which idle connections above the minimum get closed
+     * @param validationTimeoutSeconds Seconds to wait for the database when validating a connection
+     * @param leakDetectionThreshold Milliseconds a connection may be borrowed before it is reported
+     *     as a possible leak. 0 disables leak detection
+     */
+    public Settings(
+        int minSize,
+        int maxSize,
+        long connectionTimeout,
+        long idleTimeout,
+        int validationTimeoutSeconds,
+        long leakDetectionThreshold) {
+      if ((minSize < 0) || (maxSize < 1) || (minSize > maxSize))
+        throw new IllegalArgumentException(
+            "Invalid pool size! min: " + minSize + ", max: " + maxSize);
+
+      this.minSize = minSize;
+      this.maxSize = maxSize;
+      this.connectionTimeout = connectionTimeout;
+      this.idleTimeout = idleTimeout;
+      this.validationTimeoutSeconds = validationTimeoutSeconds;
+      this.leakDetectionThreshold = leakDetectionThreshold;
+    }
+
+    public int getMinSize() {
+      return minSize;
+    }
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public long getConnectionTimeout() {
+      return connectionTimeout;
+    }
+
+    public long getIdleTimeout() {
+      return idleTimeout;
+    }
+
+    public int getValidationTimeoutSeconds() {
+      return validationTimeoutSeconds;
+    }
+
+    public long getLeakDetectionThreshold() {
+      return leakDetectionThreshold;
+    }
+  }
+
+  /** A point in time snapshot of the pool's usage. */
+  public static final class Stats {
+    private final int open;
+    private final int idle;
+    private final int active;
+    private final int waiting;
+    private final int maxSize;
+    private final long borrowed;
+    private final long created;
+    private final long validationFailures;
+    private final long leaks;
+    private final long timeouts;
+    private final long waitNanos;
+
+    private Stats(
+        int open,
+        int idle,
+        int active,
+        int waiting,
+        int maxSize,
+        long borrowed,
+        long created,
+        long validationFailures,
+        long leaks,
+        long timeouts,
+        long waitNanos) {
+      this.open = open;
+      this.idle = idle;
+      this.active = active;
+      this.waiting = waiting;
+      this.maxSize = maxSize;
+      this.borrowed = borrowed;
+      this.created = created;
+      this.validationFailures = validationFailures;
+      this.leaks = leaks;
+      this.timeouts = timeouts;
+      this.waitNanos = waitNanos;
+    }
+
+    public int getOpen() {
+      return open;
+    }
+
+    public int getIdle() {
+      return idle;
+    }
+
+    public int getActive() {
+      return active;
+    }
+
+    public int getWaiting() {
+      return waiting;
+    }
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public long getBorrowed() {
+      return borrowed;
+    }
+
+    public long getCreated() {
+      return created;
+    }
+
+    public long getValidationFailures() {
+      return validationFailures;
+    }
+
+    public long getLeaks() {
+      return leaks;
+    }
+
+    public long getTimeouts() {
+      return timeouts;
+    }
+
+    public double getAverageWaitMillis() {
+      return (borrowed == 0) ? 0.0 : (waitNanos / 1_000_000.0 / borrowed);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "open=%d/%d, active=%d, idle=%d, waiting=%d, borrowed=%d, created=%d, "
+              + "validationFailures=%d, leaks=%d, timeouts=%d, avgWait=%.2fms",
+          open,
+          maxSize,
+          active,
+          idle,
+          waiting,
+          borrowed,
+          created,
+          validationFailures,
+          leaks,
+          timeouts,
+          getAverageWaitMillis());
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reverse index of the ignore lists of all loaded accounts. For every player it knows which loaded
+ * accounts are ignoring them, so excluding those from a message doesn't require checking the
+ * ignore list of every recipient.
+ */
+public class IgnoreIndex {
+  private final ConcurrentMap<UUID, Set<UUID>> ignoredBy = new ConcurrentHashMap<>();
+  private final Set<UUID> registered = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Returns the UUIDs of all loaded accounts that ignore the given player.
+   *
+   * @return A read-only live view, or an empty set if nobody ignores the player
+   */
+  public Set<UUID> getIgnoringAccounts(UUID uuid) {
+    final Set<UUID> ignoring = ignoredBy.get(uuid);
+
+    return (ignoring == null) ? Collections.emptySet() : Collections.unmodifiableSet(ignoring);
+  }
+
+  public void register(ProxyChatAccount account) {
+    final UUID uuid = account.getUniqueId();
+
+    // Accounts change their ignores while holding their own lock
+    synchronized (account) {
+      registered.add(uuid);
+      getIgnored(account).forEach(ignored -> add(uuid, ignored));
+    }
+  }
+
+  public void unregister(ProxyChatAccount account) {
+    final UUID uuid = account.getUniqueId();
+
+    synchronized (account) {
+      registered.remove(uuid);
+      getIgnored(account).forEach(ignored -> remove(uuid, ignored));
+    }
+  }
+
+  void onIgnoreAdded(UUID uuid, UUID ignored) {
+    if (registered.contains(uuid)) {
+      add(uuid, ignored);
+    }
+  }
+
+  void onIgnoreRemoved(UUID uuid, UUID ignored) {
+    if (registered.contains(uuid)) {
+      remove(uuid, ignored);
+    }
+  }
+
+  private void add(UUID uuid, UUID ignored) {
+    ignoredBy.compute(
+        ignored,
+        (key, ignoring) -> {
+          final Set<UUID> result = (ignoring == null) ? ConcurrentHashMap.newKeySet() : ignoring;
+          result.add(uuid);
+
+          return result;
+        });
+  }
+
+  private void remove(UUID uuid, UUID ignored) {
+    ignoredBy.computeIfPresent(
+        ignored,
+        (key, ignoring) -> {
+          ignoring.remove(uuid);
+
+          return ignoring.isEmpty() ? null : ignoring;
+        });
+  }
+
+  private static Collection<UUID> getIgnored(ProxyChatAccount account) {
+    // The stored ignores, even if the ignoring module is currently disabled
+    return (account instanceof Account ownAccount)
+        ? ownAccount.getIgnoredSet()
+        : account.getIgnored();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the accounts of players that recently left, so a quick reconnect doesn't need to load the
+ * account from storage again.<br>
+ * Accounts are only saved once they leave the cache through size or time based eviction, which is
+ * why every evicted account with unsaved changes is handed to the eviction handler.
+ */
+public class OfflineAccountCache {
+  private final Cache<UUID, ProxyChatAccount> cache;
+  private final Consumer<ProxyChatAccount> evictionHandler;
+
+  /**
+   * @param maxSize Maximum number of cached accounts. 0 disables the cache
+   * @param expireAfterMillis Time after which an account is evicted
+   * @param evictionHandler Receives evicted accounts that have unsaved changes
+   */
+  public OfflineAccountCache(
+      long maxSize, long expireAfterMillis, Consumer<ProxyChatAccount> evictionHandler) {
+    this.evictionHandler = evictionHandler;
+
+    cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireAfterMillis, TimeUnit.MILLISECONDS)
+            .recordStats()
+            .<UUID, ProxyChatAccount>removalListener(
+                notification -> {
+                  // Explicit removals are accounts going back online, which are saved later on
+                  if ((notification.getCause() != RemovalCause.EXPLICIT)
+                      && notification.getValue().isDirty()) {
+                    evictionHandler.accept(notification.getValue());
+                  }
+                })
+            .build();
+  }
+
+  public void put(ProxyChatAccount account) {
+    cache.put(account.getUniqueId(), account);
+  }
+
+  /**
+   * Removes and returns the cached account for the given UUID.
+   *
+   * @return The cached account, or null if there is none
+   */
+  public ProxyChatAccount take(UUID uuid) {
+    final ProxyChatAccount account = cache.getIfPresent(uuid);
+
+    if (account != null) {
+      cache.invalidate(uuid);
+    }
+
+    return account;
+  }
+
+  /** Evicts expired accounts. Guava only does this during other cache operations otherwise. */
+  public void cleanUp() {
+    cache.cleanUp();
+  }
+
+  /** Hands all cached accounts with unsaved changes to the eviction handler and empties the cache. */
+  public void evictAll() {
+    // invalidateAll counts as an explicit removal, so the accounts are passed on here instead
+    cache.asMap().values().stream().filter(ProxyChatAccount::isDirty).forEach(evictionHandler);
+    cache.invalidateAll();
+  }
+
+  public String getStats() {
+    final CacheStats stats = cache.stats();
+
+    return String.format(
+        "size=%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d",
+        cache.size(),
+        stats.hitCount(),
+        stats.missCount(),
+        stats.hitRate() * 100,
+        stats.evictionCount());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import com.velocitypowered.api.permission.PermissionSubject;
+import uk.co.notnull.ProxyChat.api.permission.Permission;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Permission}s a player had at one point in time. Checking a snapshot avoids asking the
+ * permission plugin every time, which adds up on paths that check permissions per recipient or per
+ * formatting tag.<br>
+ * If a permission plugin tells us about permission changes, snapshots are replaced when that
+ * happens. Otherwise they expire after a short time.
+ */
+public final class PermissionSnapshot {
+  private static volatile long expiryNanos = TimeUnit.SECONDS.toNanos(5);
+  private static volatile boolean invalidatedByEvents = false;
+
+  private final Set<Permission> granted;
+  private final long createdAt;
+
+  private PermissionSnapshot(Set<Permission> granted) {
+    this.granted = granted;
+    this.createdAt = System.nanoTime();
+  }
+
+  public static PermissionSnapshot of(PermissionSubject subject) {
+    final Set<Permission> granted = EnumSet.noneOf(Permission.class);
+
+    for (Permission permission : Permission.values()) {
+      if (subject.hasPermission(permission.getStringedPermission())) {
+        granted.add(permission);
+      }
+    }
+
+    return new PermissionSnapshot(granted);
+  }
+
+  public boolean has(Permission permission) {
+    return granted.contains(permission);
+  }
+
+  public boolean isExpired() {
+    return !invalidatedByEvents && ((System.nanoTime() - createdAt) >= expiryNanos);
+  }
+
+  /**
+   * @param expiryMillis Time after which snapshots are taken again, unless permission changes are
+   *     reported by a permission plugin. 0 disables caching
+   */
+  public static void setExpiry(long expiryMillis) {
+    expiryNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiryMillis));
+  }
+
+  public static long getExpiryMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(expiryNanos);
+  }
+
+  public static boolean isInvalidatedByEvents() {
+    return invalidatedByEvents;
+  }
+
+  /**
+   * @param invalidatedByEvents Whether a permission plugin hook replaces snapshots when permissions
+   *     change, so they don't need to expire
+   */
+  public static void setInvalidatedByEvents(boolean invalidatedByEvents) {
+    PermissionSnapshot.invalidatedByEvents = invalidatedByEvents;
+  }
+}
@@ -22,9 +22,11 @@
 package uk.co.notnull.ProxyChat.account;
 
 import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import org.jetbrains.annotations.NotNull;
@@ -33,18 +35,50 @@ import uk.co.notnull.ProxyChat.api.account.AccountInfo;
 import uk.co.notnull.ProxyChat.api.account.AccountManager;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
 import uk.co.notnull.ProxyChat.api.enums.AccountType;
+import uk.co.notnull.ProxyChat.api.hook.HookManager;
 
 import uk.co.notnull.ProxyChat.api.permission.Permission;
+import uk.co.notnull.ProxyChat.util.Batcher;
+import uk.co.notnull.ProxyChat.util.LoggerHelper;
+import uk.co.notnull.ProxyChat.util.StripedExecutor;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class ProxyChatAccountManager extends AccountManager {
-  private static final List<UUID> newPlayers = new LinkedList<>();
+  private static final Set<UUID> newPlayers = ConcurrentHashMap.newKeySet();
+  private static final ConcurrentMap<UUID, CompletableFuture<ProxyChatAccount>> pendingLoads =
+      new ConcurrentHashMap<>();
+  // Storage access for a single player always runs on the same lane, which keeps a save on
+  // disconnect ordered before the load on the next connect. Different players are loaded and saved
+  // in parallel, up to the size of the database connection pool, see configureIoLanes.
+  private static volatile StripedExecutor ioExecutor =
+      new StripedExecutor("ProxyChat Account IO", 4);
+  private static final AccountSaveQueue saveQueue = new AccountSaveQueue();
+  private static final IgnoreIndex ignoreIndex = new IgnoreIndex();
+  private static final ServerIndex serverIndex = new ServerIndex();
+  private static final RecipientIndex recipientIndex = new RecipientIndex();
+  private static final Batcher<PendingLoad> loadBatcher =
+      new Batcher<>("ProxyChat Account Load Batcher", ProxyChatAccountManager::dispatchLoads);
+  private static volatile OfflineAccountCache offlineCache =
+      new OfflineAccountCache(0, 0, saveQueue::enqueue);
 
   public static Optional<ProxyChatAccount> getAccount(CommandSource player) {
     if (player instanceof Player) return getAccount(((Player) player).getUniqueId());
@@ -109,31 +143,379 @@ public class ProxyChatAccountManager extends AccountManager {
   }
 
   public static void loadAccount(UUID uuid) {
-    AccountInfo loadedAccount = getAccountStorage().load(uuid);
+    loadAccountsInternal(List.of(uuid));
+  }
+
+  /**
+   * Loads several accounts at once, which storages supporting bulk loads do in fewer round trips
+   * than loading each account on its own.
+   *
+   * @param uuids UUIDs of the players to load
+   */
+  public static void loadAccounts(Collection<UUID> uuids) {
+    loadAccountsInternal(uuids);
+  }
+
+  private static Map<UUID, ProxyChatAccount> loadAccountsInternal(Collection<UUID> uuids) {
+    final Map<UUID, ProxyChatAccount> loaded = new HashMap<>();
+    final List<UUID> uncached = new ArrayList<>();
+
+    for (UUID uuid : uuids) {
+      final ProxyChatAccount cachedAccount = offlineCache.take(uuid);
+
+      if (cachedAccount != null) {
+        if (cachedAccount instanceof Account account) {
+          ProxyChat.getInstance().getProxy().getPlayer(uuid).ifPresent(account::setPlayer);
+        }
+
+        accounts.put(uuid, cachedAccount);
+        ignoreIndex.register(cachedAccount);
+        recipientIndex.register(cachedAccount);
+        loaded.put(uuid, cachedAccount);
+      } else if (!loaded.containsKey(uuid) && !uncached.contains(uuid)) {
+        // A save from a previous session may still be queued
+        saveQueue.flush(uuid);
+        uncached.add(uuid);
+      }
+    }
+
+    if (uncached.isEmpty()) {
+      return loaded;
+    }
+
+    final Map<UUID, AccountInfo> loadedAccounts =
+        (uncached.size() == 1)
+            ? Map.of(uncached.get(0), getAccountStorage().load(uncached.get(0)))
+            : getAccountStorage().loadAll(uncached);
+    final List<ProxyChatAccount> forceSave = new ArrayList<>();
+
+    for (UUID uuid : uncached) {
+      final AccountInfo loadedAccount = loadedAccounts.get(uuid);
+
+      accounts.put(uuid, loadedAccount.getAccount());
+      ignoreIndex.register(loadedAccount.getAccount());
+      recipientIndex.register(loadedAccount.getAccount());
+      loaded.put(uuid, loadedAccount.getAccount());
+
+      if (loadedAccount.isForceSave()) {
+        forceSave.add(loadedAccount.getAccount());
+      }
+
+      if (loadedAccount.isNewAccount()) {
+        newPlayers.add(uuid);
+        // Not stored yet, so it needs saving even without any changes
+        loadedAccount.getAccount().markDirty();
+      }
+    }
+
+    if (!forceSave.isEmpty()) {
+      // Failed saves mark the account dirty again
+      forceSave.forEach(ProxyChatAccount::markClean);
+      getAccountStorage().saveAll(forceSave);
+    }
+
+    return loaded;
+  }
+
+  /**
+   * Loads the account on the account IO thread. Until the load completes a default {@link Account}
+   * is registered for the player, so lookups made in the meantime never come back empty. Changes
+   * made to that placeholder are discarded once the stored account replaces it.<br>
+   * If login batching is enabled, loads requested within a short window are combined into a single
+   * bulk load.
+   *
+   * @param uuid UUID of the player to load
+   * @return A future completing with the loaded account
+   */
+  public static CompletableFuture<ProxyChatAccount> loadAccountAsync(UUID uuid) {
+    final PendingLoad load = new PendingLoad(uuid);
+
+    accounts.putIfAbsent(uuid, load.placeholder);
+    pendingLoads.put(uuid, load.future);
+
+    if (loadBatcher.isEnabled()) {
+      loadBatcher.add(load);
+    } else {
+      ioExecutor.execute(uuid, () -> completeLoads(List.of(load)));
+    }
+
+    return load.future;
+  }
 
-    accounts.put(uuid, loadedAccount.getAccount());
+  private static void dispatchLoads(List<PendingLoad> loads) {
+    final Map<ExecutorService, List<PendingLoad>> loadsByLane = new LinkedHashMap<>();
 
-    if (loadedAccount.isForceSave()) {
-      saveAccount(loadedAccount.getAccount());
+    // Split by lane, so every load stays ordered with the other storage access for its player
+    for (PendingLoad load : loads) {
+      loadsByLane
+          .computeIfAbsent(ioExecutor.getLane(load.uuid), lane -> new ArrayList<>())
+          .add(load);
     }
 
-    if (loadedAccount.isNewAccount()) {
-      newPlayers.add(loadedAccount.getAccount().getUniqueId());
+    loadsByLane.forEach((lane, laneLoads) -> lane.execute(() -> completeLoads(laneLoads)));
+  }
+
+  private static void completeLoads(List<PendingLoad> loads) {
+    Map<UUID, ProxyChatAccount> loaded;
+
+    try {
+      loaded = loadAccountsInternal(loads.stream().map(load -> load.uuid).toList());
+    } catch (RuntimeException e) {
+      LoggerHelper.error("Could not load " + loads.size() + " accounts. Using defaults", e);
+      loaded = Map.of();
+    }
+
+    for (PendingLoad load : loads) {
+      // Removed before completing so that anything chained on the future sees the load as done
+      pendingLoads.remove(load.uuid, load.future);
+      load.future.complete(loaded.getOrDefault(load.uuid, load.placeholder));
     }
   }
 
+  /**
+   * Changes how account loads on login are combined.
+   *
+   * @param windowMillis Time to wait for more logins before loading. 0 loads every account on its
+   *     own
+   * @param maxBatchSize Maximum number of accounts loaded at once
+   */
+  public static void configureLoginBatching(long windowMillis, int maxBatchSize) {
+    loadBatcher.configure(windowMillis, maxBatchSize);
+  }
+
   public static void unloadAccount(UUID uuid) {
-    Optional<ProxyChatAccount> account = getAccount(uuid);
+    final CompletableFuture<ProxyChatAccount> pendingLoad = pendingLoads.get(uuid);
 
-    account.ifPresent(
-        acc -> {
-          unloadAccount(acc);
-          newPlayers.remove(acc.getUniqueId());
-        });
+    // Don't save the placeholder over the stored account, wait for the real one instead
+    if (pendingLoad != null) {
+      pendingLoad.thenAccept(account -> unloadAccount(uuid, account));
+      return;
+    }
+
+    getAccount(uuid).ifPresent(account -> unloadAccount(uuid, account));
+  }
+
+  /**
+   * Unloads the account only if it is still the loaded account of the player. If the player
+   * reconnected while the account was loading, the new session keeps its account.
+   */
+  private static void unloadAccount(UUID uuid, ProxyChatAccount account) {
+    if (accounts.get(uuid) != account) return;
+
+    unloadAccount(account);
+    newPlayers.remove(uuid);
   }
 
   public static void unloadAccount(ProxyChatAccount account) {
-    AccountManager.unloadAccount(account);
+    accounts.remove(account.getUniqueId());
+    ignoreIndex.unregister(account);
+    recipientIndex.unregister(account);
+
+    // Saved once it leaves the cache, or right away if caching is disabled
+    offlineCache.put(account);
+  }
+
+  /**
+   * Changes how many players are loaded and saved in parallel. This should match the size of the
+   * database connection pool, so no lane waits for a connection. Work already waiting on the
+   * previous lanes still finishes.
+   *
+   * @param laneCount Number of account IO lanes
+   */
+  public static synchronized void configureIoLanes(int laneCount) {
+    final StripedExecutor previousExecutor = ioExecutor;
+
+    if (previousExecutor.getLaneCount() == Math.max(1, laneCount)) return;
+
+    ioExecutor = new StripedExecutor("ProxyChat Account IO", Math.max(1, laneCount));
+
+    try {
+      previousExecutor.shutdown(0);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Replaces the cache of recently unloaded accounts. Accounts in the previous cache are queued
+   * for saving.
+   *
+   * @param maxSize Maximum number of cached accounts. 0 disables the cache
+   * @param expireAfterMillis Time after which cached accounts are saved and dropped
+   */
+  public static void configureOfflineCache(long maxSize, long expireAfterMillis) {
+    final OfflineAccountCache previousCache = offlineCache;
+
+    offlineCache = new OfflineAccountCache(maxSize, expireAfterMillis, saveQueue::enqueue);
+    previousCache.evictAll();
+  }
+
+  /** Queues all cached offline accounts with unsaved changes for saving and empties the cache. */
+  public static void evictOfflineAccounts() {
+    offlineCache.evictAll();
+  }
+
+  public static OfflineAccountCache getOfflineCache() {
+    return offlineCache;
+  }
+
+  /**
+   * Saves all online accounts with unsaved changes and all queued saves, for shutdown and reload.
+   * The accounts are written in batches on the account IO lane of each player, so the lanes write
+   * in parallel.<br>
+   * Batches that haven't started once the timeout has passed are skipped, so nothing starts writing
+   * to the storage after it has been closed. Batches already running are left to finish in the
+   * background. The accounts of both are logged.
+   *
+   * @param timeoutMillis Maximum time to wait for the writes
+   * @return UUIDs of the accounts that could not be written in time
+   */
+  public static Set<UUID> flushAll(long timeoutMillis) {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    final Map<UUID, ProxyChatAccount> dirtyAccounts = new LinkedHashMap<>();
+
+    saveQueue.drain().forEach(account -> dirtyAccounts.put(account.getUniqueId(), account));
+
+    for (ProxyChatAccount account : accounts.values()) {
+      // Placeholders of loads still running must not overwrite the stored accounts
+      if ((account.getAccountType() == AccountType.PLAYER)
+          && account.isDirty()
+          && !pendingLoads.containsKey(account.getUniqueId())) {
+        dirtyAccounts.put(account.getUniqueId(), account);
+      }
+    }
+
+    if (dirtyAccounts.isEmpty()) {
+      return Set.of();
+    }
+
+    final StripedExecutor executor = ioExecutor;
+    final Map<ExecutorService, List<ProxyChatAccount>> accountsByLane = new LinkedHashMap<>();
+    final int batchSize = saveQueue.getBatchSize();
+    final List<List<ProxyChatAccount>> batches = new ArrayList<>();
+    final List<CompletableFuture<Void>> writes = new ArrayList<>();
+
+    for (ProxyChatAccount account : dirtyAccounts.values()) {
+      accountsByLane
+          .computeIfAbsent(executor.getLane(account.getUniqueId()), lane -> new ArrayList<>())
+          .add(account);
+    }
+
+    accountsByLane.forEach(
+        (lane, laneAccounts) -> {
+          for (int i = 0; i < laneAccounts.size(); i += batchSize) {
+            final List<ProxyChatAccount> batch =
+                laneAccounts.subList(i, Math.min(i + batchSize, laneAccounts.size()));
+
+            batches.add(batch);
+            writes.add(
+                CompletableFuture.runAsync(
+                    () -> {
+                      // Left dirty, so it is reported below
+                      if (System.nanoTime() - deadline >= 0) return;
+
+                      // Cleared before writing, so failed writes mark the account dirty again
+                      batch.forEach(ProxyChatAccount::markClean);
+                      getAccountStorage().saveAll(batch);
+                    },
+                    lane));
+          }
+        });
+
+    try {
+      CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]))
+          .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      // Reported below
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LoggerHelper.error("Could not save accounts", e.getCause());
+    }
+
+    final Set<UUID> unwritten = new LinkedHashSet<>();
+
+    for (int i = 0; i < batches.size(); i++) {
+      final CompletableFuture<Void> write = writes.get(i);
+      final boolean written = write.isDone() && !write.isCompletedExceptionally();
+
+      for (ProxyChatAccount account : batches.get(i)) {
+        if (!written || account.isDirty()) {
+          unwritten.add(account.getUniqueId());
+
+          // Offline accounts are kept for the next flush, if there is one
+          if (!accounts.containsKey(account.getUniqueId())) {
+            account.markDirty();
+            saveQueue.enqueue(account);
+          }
+        }
+      }
+    }
+
+    if (!unwritten.isEmpty()) {
+      LoggerHelper.warning(
+          "Could not save "
+              + unwritten.size()
+              + " of "
+              + dirtyAccounts.size()
+              + " accounts within "
+              + timeoutMillis
+              + "ms: "
+              + unwritten);
+    }
+
+    return unwritten;
+  }
+
+  /** Writes all queued account saves, blocking until they are written. */
+  public static void flushSaves() {
+    saveQueue.flush();
+  }
+
+  public static IgnoreIndex getIgnoreIndex() {
+    return ignoreIndex;
+  }
+
+  /** Drops the cached permissions of a loaded account, after they changed. */
+  public static void invalidatePermissions(UUID uuid) {
+    getAccount(uuid)
+        .ifPresent(
+            account -> {
+              if (account instanceof Account) {
+                ((Account) account).invalidatePermissions();
+              }
+
+              // Switches spying off if its permission is gone. Not part of the index update, as
+              // changing the spy settings updates the index itself
+              account.hasSocialSpyEnabled();
+              account.hasLocalSpyEnabled();
+              recipientIndex.update(account);
+            });
+  }
+
+  public static RecipientIndex getRecipientIndex() {
+    return recipientIndex;
+  }
+
+  public static ServerIndex getServerIndex() {
+    return serverIndex;
+  }
+
+  /** Fills the server index from the current servers of all online players. */
+  public static void rebuildServerIndex() {
+    serverIndex.clear();
+
+    for (Player player : ProxyChat.getInstance().getProxy().getAllPlayers()) {
+      player
+          .getCurrentServer()
+          .ifPresent(
+              connection ->
+                  serverIndex.move(player.getUniqueId(), connection.getServerInfo().getName()));
+    }
+  }
+
+  public static AccountSaveQueue getSaveQueue() {
+    return saveQueue;
   }
 
   public static boolean isNew(UUID uuid) {
@@ -141,12 +523,39 @@ public class ProxyChatAccountManager extends AccountManager {
   }
 
   @Subscribe
-  public void onPlayerConnect(PostLoginEvent event) {
-    loadAccount(event.getPlayer().getUniqueId());
+  public EventTask onPlayerConnect(PostLoginEvent event) {
+    return EventTask.resumeWhenComplete(loadAccountAsync(event.getPlayer().getUniqueId()));
+  }
+
+  @Subscribe
+  public void onServerConnected(ServerPostConnectEvent event) {
+    final Player player = event.getPlayer();
+
+    player
+        .getCurrentServer()
+        .ifPresent(
+            connection ->
+                serverIndex.move(player.getUniqueId(), connection.getServerInfo().getName()));
+    // Permissions and prefixes may depend on the server
+    invalidatePermissions(player.getUniqueId());
+    HookManager.invalidate(player.getUniqueId());
   }
 
   @Subscribe
   public void onPlayerDisconnect(DisconnectEvent event) {
+    serverIndex.remove(event.getPlayer().getUniqueId());
+    HookManager.invalidate(event.getPlayer().getUniqueId());
     unloadAccount(event.getPlayer().getUniqueId());
   }
+
+  private static final class PendingLoad {
+    private final UUID uuid;
+    private final ProxyChatAccount placeholder;
+    private final CompletableFuture<ProxyChatAccount> future = new CompletableFuture<>();
+
+    private PendingLoad(UUID uuid) {
+      this.uuid = uuid;
+      this.placeholder = new Account(uuid);
+    }
+  }
 }
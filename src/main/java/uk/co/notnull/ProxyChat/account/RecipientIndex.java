@@ -0,0 +1,137 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import uk.co.notnull.ProxyChat.api.account.AccountManager;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.permission.Permission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the loaded accounts that receive spy copies, staff chat or join, leave and switch messages
+ * in a set per group. Sending to one of these groups then only looks at its members instead of
+ * every player on the network.<br>
+ * Memberships are updated when an account is registered, when its spy settings change and when its
+ * permissions are invalidated.
+ */
+public class RecipientIndex {
+  public enum Group {
+    // Not hasSocialSpyEnabled, which switches spying off without the permission and would update
+    // the index again from within an update
+    SOCIAL_SPY(
+        account ->
+            (account instanceof Account)
+                ? ((Account) account).isSocialSpyActive()
+                : account.hasSocialSpyEnabled()),
+    LOCAL_SPY(
+        account ->
+            (account instanceof Account)
+                ? ((Account) account).isLocalSpyActive()
+                : account.hasLocalSpyEnabled()),
+    STAFF_CHAT(account -> account.hasPermission(Permission.COMMAND_STAFFCHAT_VIEW)),
+    JOIN_VIEW(account -> account.hasPermission(Permission.MESSAGE_JOIN_VIEW)),
+    LEAVE_VIEW(account -> account.hasPermission(Permission.MESSAGE_LEAVE_VIEW)),
+    SWITCH_VIEW(account -> account.hasPermission(Permission.MESSAGE_SWITCH_VIEW));
+
+    private final Predicate<ProxyChatAccount> membership;
+
+    Group(Predicate<ProxyChatAccount> membership) {
+      this.membership = membership;
+    }
+  }
+
+  private final Map<Group, Set<UUID>> members = new EnumMap<>(Group.class);
+  private final Set<UUID> registered = ConcurrentHashMap.newKeySet();
+
+  public RecipientIndex() {
+    for (Group group : Group.values()) {
+      members.put(group, ConcurrentHashMap.newKeySet());
+    }
+  }
+
+  public void register(ProxyChatAccount account) {
+    registered.add(account.getUniqueId());
+    update(account);
+  }
+
+  public void unregister(ProxyChatAccount account) {
+    final UUID uuid = account.getUniqueId();
+
+    synchronized (account) {
+      registered.remove(uuid);
+      members.values().forEach(group -> group.remove(uuid));
+    }
+  }
+
+  /** Checks again which groups a registered account belongs to. Unregistered accounts are ignored. */
+  public void update(ProxyChatAccount account) {
+    final UUID uuid = account.getUniqueId();
+
+    synchronized (account) {
+      if (!registered.contains(uuid)) return;
+
+      for (Group group : Group.values()) {
+        if (group.membership.test(account)) {
+          members.get(group).add(uuid);
+        } else {
+          members.get(group).remove(uuid);
+        }
+      }
+    }
+  }
+
+  /** Updates all registered accounts, for permission changes that aren't reported as they happen. */
+  public void refresh() {
+    for (UUID uuid : registered) {
+      AccountManager.getAccount(uuid).ifPresent(this::update);
+    }
+  }
+
+  /**
+   * @return The UUIDs of the members of the group, as a read-only live view
+   */
+  public Set<UUID> getMembers(Group group) {
+    return Collections.unmodifiableSet(members.get(group));
+  }
+
+  /**
+   * @return The loaded accounts of the members of the group
+   */
+  public List<ProxyChatAccount> getAccounts(Group group) {
+    final Set<UUID> groupMembers = members.get(group);
+    final List<ProxyChatAccount> accounts = new ArrayList<>(groupMembers.size());
+
+    for (UUID uuid : groupMembers) {
+      AccountManager.getAccount(uuid).ifPresent(accounts::add);
+    }
+
+    return accounts;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import uk.co.notnull.ProxyChat.api.account.AccountManager;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Index of the online players on each server. Delivering a message to the players of a few servers
+ * only has to look at those servers, instead of checking the current server of every player on the
+ * network.
+ */
+public class ServerIndex {
+  private final ConcurrentMap<String, Set<UUID>> playersByServer = new ConcurrentHashMap<>();
+  private final ConcurrentMap<UUID, String> serverByPlayer = new ConcurrentHashMap<>();
+
+  /** Records that a player is now on the given server, removing them from their previous one. */
+  public synchronized void move(UUID uuid, String server) {
+    final String previous = serverByPlayer.put(uuid, server);
+
+    if (server.equals(previous)) return;
+
+    if (previous != null) {
+      removeFromServer(uuid, previous);
+    }
+
+    playersByServer.computeIfAbsent(server, key -> ConcurrentHashMap.newKeySet()).add(uuid);
+  }
+
+  public synchronized void remove(UUID uuid) {
+    final String previous = serverByPlayer.remove(uuid);
+
+    if (previous != null) {
+      removeFromServer(uuid, previous);
+    }
+  }
+
+  public synchronized void clear() {
+    playersByServer.clear();
+    serverByPlayer.clear();
+  }
+
+  /**
+   * @return The UUIDs of the players on the given server, as a read-only live view
+   */
+  public Set<UUID> getPlayers(String server) {
+    final Set<UUID> players = playersByServer.get(server);
+
+    return (players == null) ? Collections.emptySet() : Collections.unmodifiableSet(players);
+  }
+
+  /**
+   * @return The loaded accounts of the players on the given server
+   */
+  public List<ProxyChatAccount> getAccounts(String server) {
+    final List<ProxyChatAccount> accounts = new ArrayList<>();
+
+    addAccounts(getPlayers(server), accounts);
+
+    return accounts;
+  }
+
+  /**
+   * @return The loaded accounts of the players on the given servers
+   */
+  public List<ProxyChatAccount> getAccounts(Collection<String> servers) {
+    final List<ProxyChatAccount> accounts = new ArrayList<>();
+
+    for (String server : servers) {
+      addAccounts(getPlayers(server), accounts);
+    }
+
+    return accounts;
+  }
+
+  /**
+   * Collects the accounts of the players on all servers accepted by the filter. The filter is
+   * checked once per server, not once per player.
+   *
+   * @return The loaded accounts of the players on the matching servers
+   */
+  public List<ProxyChatAccount> getAccounts(Predicate<String> serverFilter) {
+    final List<ProxyChatAccount> accounts = new ArrayList<>();
+
+    for (Map.Entry<String, Set<UUID>> entry : playersByServer.entrySet()) {
+      if (serverFilter.test(entry.getKey())) {
+        addAccounts(entry.getValue(), accounts);
+      }
+    }
+
+    return accounts;
+  }
+
+  public int getServerCount() {
+    return playersByServer.size();
+  }
+
+  private void removeFromServer(UUID uuid, String server) {
+    playersByServer.computeIfPresent(
+        server,
+        (key, players) -> {
+          players.remove(uuid);
+
+          return players.isEmpty() ? null : players;
+        });
+  }
+
+  private static void addAccounts(Set<UUID> players, List<ProxyChatAccount> accounts) {
+    for (UUID uuid : players) {
+      AccountManager.getAccount(uuid).ifPresent(accounts::add);
+    }
+  }
+}
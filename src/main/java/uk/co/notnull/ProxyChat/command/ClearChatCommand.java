@@ -23,6 +23,7 @@ package uk.co.notnull.ProxyChat.command;
 
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.google.common.annotations.VisibleForTesting;
 import uk.co.notnull.ProxyChat.account.ProxyChatAccountManager;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
 import uk.co.notnull.ProxyChat.message.Messages;
@@ -36,8 +37,11 @@ import uk.co.notnull.ProxyChat.util.ServerNameUtil;
 import net.kyori.adventure.text.Component;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -46,7 +50,10 @@ public class ClearChatCommand extends BaseCommand {
   static final List<String> arg1Completetions = Arrays.asList("local", "global");
 
   private static final String USAGE = "/clearchat <local [server]|global>";
-  private static final Component EMPTY_LINE = Component.newline();
+  private static final String GLOBAL_SCOPE = "*";
+  private static final Map<String, Long> lastCleared = new HashMap<>();
+  private static Component emptyLinesComponent = Component.empty();
+  private static int emptyLinesCount = 0;
 
   public ClearChatCommand(ClearChatModule clearChatModule) {
     super(
@@ -65,6 +72,10 @@ public class ClearChatCommand extends BaseCommand {
 
       final int lines =
           ProxyChatModuleManager.CLEAR_CHAT_MODULE.getModuleSection().getInt("emptyLines");
+      final long cooldown =
+          ProxyChatModuleManager.CLEAR_CHAT_MODULE
+              .getModuleSection()
+              .getDuration("cooldown", TimeUnit.MILLISECONDS);
       final ProxyChatAccount proxyChatAccount = ProxyChatAccountManager.getAccount(invocation.source()).orElseThrow();
 
       if (invocation.arguments()[0].equalsIgnoreCase("local")) {
@@ -81,12 +92,25 @@ public class ClearChatCommand extends BaseCommand {
               proxyChatAccount.getServer();
 
         if (server.isEmpty()) return;
+        final String serverName = server.get().getServerInfo().getName();
+
+        if (!tryClear(serverName, System.currentTimeMillis(), cooldown)) {
+          MessagesService.sendMessage(
+              invocation.source(), Messages.ALREADY_CLEARED.get(invocation.source()));
+          return;
+        }
 
         clearLocalChat(server.get(), lines);
 
         MessagesService.sendToMatchingPlayers(Messages.CLEARED_LOCAL.get(invocation.source()),
                                               PredicateUtil.getInclusiveMulticastPredicate(server.get()));
       } else if (invocation.arguments()[0].equalsIgnoreCase("global")) {
+        if (!tryClear(GLOBAL_SCOPE, System.currentTimeMillis(), cooldown)) {
+          MessagesService.sendMessage(
+              invocation.source(), Messages.ALREADY_CLEARED.get(invocation.source()));
+          return;
+        }
+
         clearGlobalChat(lines);
 
         MessagesService.sendToMatchingPlayers(
@@ -127,8 +151,47 @@ public class ClearChatCommand extends BaseCommand {
   }
 
   private static void clearChat(int emptyLines, Predicate<ProxyChatAccount> predicate) {
-    for (int i = 0; i < emptyLines; i++) {
-      MessagesService.sendToMatchingPlayers(EMPTY_LINE, predicate);
+    // All lines are sent as one message, so every recipient only gets a single packet
+    MessagesService.getMatchingAudience(predicate).sendMessage(getEmptyLines(emptyLines));
+  }
+
+  @VisibleForTesting
+  static synchronized Component getEmptyLines(int emptyLines) {
+    if (emptyLines != emptyLinesCount) {
+      emptyLinesComponent = Component.text("\n".repeat(Math.max(0, emptyLines - 1)));
+      emptyLinesCount = emptyLines;
+    }
+
+    return emptyLinesComponent;
+  }
+
+  /**
+   * Records a clear of the given scope, unless the same scope or the global chat was already cleared
+   * within the cooldown.
+   *
+   * @param scope Name of the cleared server, or {@link #GLOBAL_SCOPE}
+   * @return Whether the chat needs to be cleared
+   */
+  @VisibleForTesting
+  static synchronized boolean tryClear(String scope, long now, long cooldownMillis) {
+    if (cooldownMillis <= 0) return true;
+
+    final Long lastGlobal = lastCleared.get(GLOBAL_SCOPE);
+    final Long lastLocal = lastCleared.get(scope);
+
+    if (((lastGlobal != null) && (now - lastGlobal < cooldownMillis))
+        || ((lastLocal != null) && (now - lastLocal < cooldownMillis))) {
+      return false;
     }
+
+    lastCleared.put(scope, now);
+    lastCleared.values().removeIf(last -> now - last >= cooldownMillis);
+
+    return true;
+  }
+
+  @VisibleForTesting
+  static synchronized void resetCooldowns() {
+    lastCleared.clear();
   }
 }
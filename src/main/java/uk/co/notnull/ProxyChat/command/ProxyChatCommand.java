@@ -22,7 +22,13 @@
 package uk.co.notnull.ProxyChat.command;
 
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
 import uk.co.notnull.ProxyChat.ProxyChat;
+import uk.co.notnull.ProxyChat.account.AccountLogStorage;
+import uk.co.notnull.ProxyChat.account.AccountSQLStorage;
+import uk.co.notnull.ProxyChat.account.ProxyChatAccountManager;
+import uk.co.notnull.ProxyChat.api.account.AccountManager;
+import uk.co.notnull.ProxyChat.api.module.ModuleManager;
 import uk.co.notnull.ProxyChat.message.Messages;
 import uk.co.notnull.ProxyChat.message.MessagesService;
 import uk.co.notnull.ProxyChat.module.ProxyChatModuleManager;
@@ -33,13 +39,14 @@ import uk.co.notnull.ProxyChat.util.LoggerHelper;
 import java.io.IOException;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class ProxyChatCommand extends BaseCommand {
   private static final List<String> arg1Completetions =
-      Arrays.asList("modules", "reload");
+      Arrays.asList("modules", "reload", "stats");
 
   public ProxyChatCommand() {
     super("proxychat");
@@ -68,6 +75,15 @@ public class ProxyChatCommand extends BaseCommand {
           && PermissionManager.hasPermission(invocation.source(), Permission.PROXYCHAT_MODULES)) {
         MessagesService.sendMessage(invocation.source(), Messages.PLUGIN_MODULES.get());
         MessagesService.sendMessage(invocation.source(), Component.text(ProxyChatModuleManager.getActiveModuleString()));
+        return;
+      } else if (invocation.arguments()[0].equalsIgnoreCase("stats")
+          && PermissionManager.hasPermission(invocation.source(), Permission.PROXYCHAT_STATISTICS)) {
+        MessagesService.sendMessage(invocation.source(), Messages.PLUGIN_STATISTICS.get());
+
+        for (String line : getStatistics()) {
+          MessagesService.sendMessage(invocation.source(), Component.text(line, NamedTextColor.GRAY));
+        }
+
         return;
       }
     }
@@ -92,6 +108,34 @@ public class ProxyChatCommand extends BaseCommand {
     return super.suggest(invocation);
   }
 
+  private List<String> getStatistics() {
+    final List<String> statistics = new ArrayList<>();
+
+    if (AccountManager.getAccountStorage() instanceof AccountSQLStorage sqlStorage) {
+      statistics.add("Database connections: " + sqlStorage.getPoolStats());
+    } else if (AccountManager.getAccountStorage() instanceof AccountLogStorage logStorage) {
+      statistics.add("Account log: " + logStorage.getStats());
+    }
+
+    statistics.add("Account saves: " + ProxyChatAccountManager.getSaveQueue().getStats());
+    statistics.add("Offline account cache: " + ProxyChatAccountManager.getOfflineCache().getStats());
+    statistics.add("Chat pipeline: " + MessagesService.getPipeline().getStats());
+
+    if (ModuleManager.isModuleActive(ProxyChatModuleManager.JOIN_MESSAGE_MODULE)) {
+      statistics.add("Join messages: " + ProxyChatModuleManager.JOIN_MESSAGE_MODULE.getCoalescer().getStats());
+    }
+
+    if (ModuleManager.isModuleActive(ProxyChatModuleManager.LEAVE_MESSAGE_MODULE)) {
+      statistics.add("Leave messages: " + ProxyChatModuleManager.LEAVE_MESSAGE_MODULE.getCoalescer().getStats());
+    }
+
+    if (ModuleManager.isModuleActive(ProxyChatModuleManager.SERVER_SWITCH_MODULE)) {
+      statistics.add("Switch messages: " + ProxyChatModuleManager.SERVER_SWITCH_MODULE.getCoalescer().getStats());
+    }
+
+    return statistics;
+  }
+
   private String getUnquotedString(String str) {
     if ((str == null) || !(str.startsWith("\"") && str.endsWith("\""))) return str;
 
@@ -24,17 +24,23 @@ package uk.co.notnull.ProxyChat.listener;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.proxy.Player;
 import uk.co.notnull.ProxyChat.api.event.ProxyChatJoinEvent;
-import uk.co.notnull.ProxyChat.message.MessagesService;
+import uk.co.notnull.ProxyChat.message.AnnouncementCoalescer;
 import uk.co.notnull.ProxyChat.api.permission.Permission;
 import uk.co.notnull.ProxyChat.permission.PermissionManager;
 
 public class JoinMessageListener {
+  private final AnnouncementCoalescer coalescer;
+
+  public JoinMessageListener(AnnouncementCoalescer coalescer) {
+    this.coalescer = coalescer;
+  }
+
   @Subscribe
   public void onPlayerJoin(ProxyChatJoinEvent e) {
     Player player = e.getPlayer();
 
     if (!PermissionManager.hasPermission(player, Permission.MESSAGE_JOIN)) return;
 
-    MessagesService.sendJoinMessage(player);
+    coalescer.send(player);
   }
 }
@@ -24,17 +24,23 @@ package uk.co.notnull.ProxyChat.listener;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.proxy.Player;
-import uk.co.notnull.ProxyChat.message.MessagesService;
+import uk.co.notnull.ProxyChat.message.AnnouncementCoalescer;
 import uk.co.notnull.ProxyChat.api.permission.Permission;
 import uk.co.notnull.ProxyChat.permission.PermissionManager;
 
 public class ServerSwitchListener {
+  private final AnnouncementCoalescer coalescer;
+
+  public ServerSwitchListener(AnnouncementCoalescer coalescer) {
+    this.coalescer = coalescer;
+  }
+
   @Subscribe
   public void onPlayerServerSwitch(ServerPostConnectEvent e) {
     Player player = e.getPlayer();
 
     if (PermissionManager.hasPermission(player, Permission.MESSAGE_SWITCH)) {
-      player.getCurrentServer().ifPresent(s -> MessagesService.sendSwitchMessage(player, s.getServer()));
+      player.getCurrentServer().ifPresent(s -> coalescer.send(player));
     }
   }
 }
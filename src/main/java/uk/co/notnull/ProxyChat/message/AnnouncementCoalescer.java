@@ -0,0 +1,220 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import uk.co.notnull.ProxyChat.ProxyChat;
+import uk.co.notnull.ProxyChat.account.ProxyChatAccountManager;
+import uk.co.notnull.ProxyChat.account.RecipientIndex;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import uk.co.notnull.ProxyChat.api.placeholder.InvalidContextError;
+import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatContext;
+import uk.co.notnull.ProxyChat.module.ProxyChatModuleManager;
+import uk.co.notnull.ProxyChat.util.LoggerHelper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextReplacementConfig;
+
+/**
+ * Merges join, leave and switch messages into summaries while many players connect at once, for
+ * example after a backend crashed.<br>
+ * Up to the threshold, messages within a window are sent as usual. Further messages are held back,
+ * and sent as a single summary ("Alice, Bob and 312 others joined") when the window is flushed. If
+ * only a few messages were held back they are sent individually instead.<br>
+ * Vanished players are never merged, as the summary is visible to everyone. On ignorable channels,
+ * players ignoring anyone named in a summary don't receive it.
+ */
+public class AnnouncementCoalescer {
+  /** Number of players named in a summary */
+  @VisibleForTesting
+  static final int NAMED_PLAYERS = 2;
+
+  private final ChannelType channel;
+  private final Format summaryFormat;
+  private final RecipientIndex.Group recipients;
+  private final int threshold;
+  private final long windowMillis;
+  private final List<ProxyChatContext> pending = new ArrayList<>();
+  private final LongAdder suppressed = new LongAdder();
+  private final LongAdder summaries = new LongAdder();
+  private long windowStart = 0;
+  private int windowCount = 0;
+  private ScheduledTask flushTask;
+
+  /**
+   * @param threshold Number of messages per window that are sent individually. 0 never merges
+   *     messages
+   * @param windowMillis Length of a window, which should also be the flush interval
+   */
+  public AnnouncementCoalescer(
+      ChannelType channel,
+      Format summaryFormat,
+      RecipientIndex.Group recipients,
+      int threshold,
+      long windowMillis) {
+    this.channel = channel;
+    this.summaryFormat = summaryFormat;
+    this.recipients = recipients;
+    this.threshold = threshold;
+    this.windowMillis = windowMillis;
+  }
+
+  public void start() {
+    if (threshold <= 0) return;
+
+    flushTask =
+        ProxyChat.getInstance()
+            .getProxy()
+            .getScheduler()
+            .buildTask(ProxyChat.getInstance(), this::flush)
+            .repeat(windowMillis, TimeUnit.MILLISECONDS)
+            .schedule();
+  }
+
+  public void stop() {
+    if (flushTask != null) {
+      flushTask.cancel();
+      flushTask = null;
+    }
+
+    flush();
+  }
+
+  public void send(Player player) throws InvalidContextError {
+    final ProxyChatContext context = new Context(player, null);
+    context.setChannel(channel);
+
+    final boolean vanished = context.getSender().map(ProxyChatAccount::isVanished).orElse(false);
+
+    if (vanished || !offer(context, System.currentTimeMillis())) {
+      MessagesService.sendChannelMessage(context);
+    }
+  }
+
+  /**
+   * Counts a message against the current window.
+   *
+   * @return Whether the message was held back for the next summary
+   */
+  @VisibleForTesting
+  synchronized boolean offer(ProxyChatContext context, long now) {
+    if (threshold <= 0) return false;
+
+    if (now - windowStart >= windowMillis) {
+      windowStart = now;
+      windowCount = 0;
+    }
+
+    if (++windowCount <= threshold) return false;
+
+    pending.add(context);
+    suppressed.increment();
+
+    return true;
+  }
+
+  @VisibleForTesting
+  synchronized List<ProxyChatContext> drain() {
+    final List<ProxyChatContext> drained = new ArrayList<>(pending);
+    pending.clear();
+
+    return drained;
+  }
+
+  /** Sends the messages held back since the last flush. */
+  public void flush() {
+    final List<ProxyChatContext> held = drain();
+
+    if (held.isEmpty()) return;
+
+    if (held.size() <= NAMED_PLAYERS + 1) {
+      for (ProxyChatContext context : held) {
+        try {
+          MessagesService.sendChannelMessage(context);
+        } catch (InvalidContextError e) {
+          LoggerHelper.warning("Could not send held back " + channel + " message", e);
+        }
+      }
+
+      return;
+    }
+
+    final Set<UUID> ignoringAccounts = getIgnoringAccounts(held);
+
+    summaries.increment();
+    MessagesService.sendToMatchingPlayers(
+        getSummary(held),
+        ProxyChatAccountManager.getRecipientIndex().getAccounts(recipients),
+        account -> !ignoringAccounts.contains(account.getUniqueId()));
+  }
+
+  /**
+   * Returns the accounts ignoring any of the players named in the summary of the given messages.
+   * They don't receive the summary, like they wouldn't receive the individual messages.
+   */
+  private Set<UUID> getIgnoringAccounts(List<ProxyChatContext> held) {
+    if (!channel.isIgnorable()) return Collections.emptySet();
+
+    final Set<UUID> ignoringAccounts = new HashSet<>();
+
+    held.stream()
+        .limit(NAMED_PLAYERS)
+        .map(context -> context.getSender().orElseThrow())
+        .forEach(
+            sender ->
+                ignoringAccounts.addAll(
+                    ProxyChatModuleManager.IGNORING_MODULE.getIgnoringAccounts(sender)));
+
+    return ignoringAccounts;
+  }
+
+  private Component getSummary(List<ProxyChatContext> held) {
+    final String names =
+        held.stream()
+            .limit(NAMED_PLAYERS)
+            .map(context -> context.getSender().orElseThrow().getName())
+            .collect(Collectors.joining(", "));
+
+    return PlaceHolderUtil.formatMessage(PlaceHolderUtil.getFormat(summaryFormat), new ProxyChatContext())
+        .replaceText(TextReplacementConfig.builder().matchLiteral("%names%").replacement(names).build())
+        .replaceText(
+            TextReplacementConfig.builder()
+                .matchLiteral("%others%")
+                .replacement(String.valueOf(held.size() - NAMED_PLAYERS))
+                .build());
+  }
+
+  public String getStats() {
+    return "suppressed=" + suppressed.sum() + ", summaries=" + summaries.sum();
+  }
+}
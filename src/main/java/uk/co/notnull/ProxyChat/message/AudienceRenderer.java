@@ -0,0 +1,57 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import uk.co.notnull.ProxyChat.api.placeholder.PlaceHolderManager;
+import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatContext;
+import net.kyori.adventure.text.Component;
+
+/**
+ * Renders the formats of a single message for each class of audience (sender, target, spies,
+ * channel recipients).
+ *
+ * <p>Placeholders only read from the context, so no placeholder depends on the recipient and every
+ * recipient of a format shares one component. Placeholders are memoized by the context, so those
+ * derived from the sender, target, server and message are rendered once and spliced into every
+ * format rendered for the context. Switching a LOCAL message to MULTICAST only renders the
+ * channel dependent placeholders, like %channel%, again. Other changes to the context render all
+ * of them again.
+ */
+public class AudienceRenderer {
+  private final ProxyChatContext context;
+
+  public AudienceRenderer(ProxyChatContext context) {
+    this.context = context;
+  }
+
+  public Component render(Format format) {
+    return PlaceHolderUtil.getFormatTemplate(format).render(context);
+  }
+
+  public Component render(Component format) {
+    return PlaceHolderManager.processMessage(format, context);
+  }
+
+  public ProxyChatContext getContext() {
+    return context;
+  }
+}
@@ -31,7 +31,9 @@ public enum Format {
   CHAT_LOGGING_FILE("chatLoggingFile"),
   GLOBAL_CHAT("globalChat"),
   JOIN_MESSAGE("joinMessage"),
+  JOIN_SUMMARY("joinSummary"),
   LEAVE_MESSAGE("leaveMessage"),
+  LEAVE_SUMMARY("leaveSummary"),
   LOCAL_CHAT("localChat"),
   MULTICAST_CHAT("multicastChat"),
   LOCAL_EVENT("localEvent"),
@@ -41,6 +43,7 @@ public enum Format {
   MESSAGE_TARGET("messageTarget"),
   MOTD("motd"),
   SERVER_SWITCH("serverSwitch"),
+  SERVER_SWITCH_SUMMARY("serverSwitchSummary"),
   SOCIAL_SPY("socialSpy"),
   STAFF_CHAT("staffChat"),
   WELCOME_MESSAGE("welcomeMessage");
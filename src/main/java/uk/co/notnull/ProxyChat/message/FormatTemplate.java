@@ -0,0 +1,227 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import uk.co.notnull.ProxyChat.api.placeholder.PlaceHolderManager;
+import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatContext;
+import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatPlaceHolder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.TranslatableComponent;
+import net.kyori.adventure.text.event.HoverEvent;
+
+/**
+ * A format parsed once into a component tree with placeholder slots.<br>
+ * Subtrees without placeholders are shared by every rendered message, and text containing
+ * placeholders is split into static parts and slots when compiling. Rendering only resolves the
+ * slots, without parsing the format or searching its text again. Components whose hover or click
+ * events contain placeholders are rendered by {@link PlaceHolderManager} instead.
+ */
+public final class FormatTemplate {
+  private static final Pattern placeholderPattern =
+      Pattern.compile(PlaceHolderManager.placeholderChar + "\\w+?" + PlaceHolderManager.placeholderChar);
+
+  private final Component component;
+  private final Node root;
+
+  private FormatTemplate(Component component) {
+    this.component = component;
+    this.root = compileNode(component);
+  }
+
+  public static FormatTemplate compile(Component component) {
+    return new FormatTemplate(component);
+  }
+
+  /**
+   * @return The parsed format, with its placeholders unresolved
+   */
+  public Component getComponent() {
+    return component;
+  }
+
+  public boolean hasPlaceholders() {
+    return !(root instanceof StaticNode);
+  }
+
+  public Component render(ProxyChatContext context) {
+    return render(context, (placeholder, name) -> placeholder.getReplacementComponent(name, context));
+  }
+
+  /**
+   * @param resolver Renders a placeholder that is applicable to the context, see {@link
+   *     PlaceHolderManager#processMessage(Component, ProxyChatContext, BiFunction)}
+   */
+  public Component render(
+      ProxyChatContext context, BiFunction<ProxyChatPlaceHolder, String, Component> resolver) {
+    return root.render(context, resolver);
+  }
+
+  private static Node compileNode(Component component) {
+    if (!containsPlaceholder(component)) {
+      return new StaticNode(component);
+    }
+
+    if (!(component instanceof TextComponent text) || hasEventPlaceholder(component)) {
+      return new FallbackNode(component);
+    }
+
+    final List<Node> children = new ArrayList<>();
+    final Matcher matcher = placeholderPattern.matcher(text.content());
+    int start = 0;
+
+    while (matcher.find()) {
+      if (matcher.start() > start) {
+        children.add(new StaticNode(Component.text(text.content().substring(start, matcher.start()))));
+      }
+
+      children.add(new SlotNode(matcher.group().substring(1, matcher.group().length() - 1)));
+      start = matcher.end();
+    }
+
+    if (start < text.content().length()) {
+      children.add(new StaticNode(Component.text(text.content().substring(start))));
+    }
+
+    for (Component child : component.children()) {
+      children.add(compileNode(child));
+    }
+
+    return new BranchNode(text.content("").children(List.of()), children);
+  }
+
+  private static boolean containsPlaceholder(Component component) {
+    if ((component instanceof TextComponent text) && placeholderPattern.matcher(text.content()).find()) {
+      return true;
+    }
+
+    if (hasEventPlaceholder(component)) {
+      return true;
+    }
+
+    if (component instanceof TranslatableComponent translatable) {
+      for (Component argument : translatable.args()) {
+        if (containsPlaceholder(argument)) return true;
+      }
+    }
+
+    for (Component child : component.children()) {
+      if (containsPlaceholder(child)) return true;
+    }
+
+    return false;
+  }
+
+  private static boolean hasEventPlaceholder(Component component) {
+    final HoverEvent<?> hoverEvent = component.hoverEvent();
+
+    if ((hoverEvent != null)
+        && (hoverEvent.action() == HoverEvent.Action.SHOW_TEXT)
+        && containsPlaceholder((Component) hoverEvent.value())) {
+      return true;
+    }
+
+    return (component.clickEvent() != null)
+        && placeholderPattern.matcher(component.clickEvent().value()).find();
+  }
+
+  private interface Node {
+    Component render(
+        ProxyChatContext context, BiFunction<ProxyChatPlaceHolder, String, Component> resolver);
+  }
+
+  private static final class StaticNode implements Node {
+    private final Component component;
+
+    private StaticNode(Component component) {
+      this.component = component;
+    }
+
+    @Override
+    public Component render(
+        ProxyChatContext context, BiFunction<ProxyChatPlaceHolder, String, Component> resolver) {
+      return component;
+    }
+  }
+
+  private static final class SlotNode implements Node {
+    private final String name;
+    private final Component unresolved;
+
+    private SlotNode(String name) {
+      this.name = name;
+      this.unresolved =
+          Component.text(PlaceHolderManager.placeholderChar + name + PlaceHolderManager.placeholderChar);
+    }
+
+    @Override
+    public Component render(
+        ProxyChatContext context, BiFunction<ProxyChatPlaceHolder, String, Component> resolver) {
+      final Optional<ProxyChatPlaceHolder> placeholder =
+          PlaceHolderManager.getApplicablePlaceholder(name, context);
+
+      return placeholder.map(p -> resolver.apply(p, name)).orElse(unresolved);
+    }
+  }
+
+  private static final class BranchNode implements Node {
+    private final Component component;
+    private final List<Node> children;
+
+    private BranchNode(Component component, List<Node> children) {
+      this.component = component;
+      this.children = children;
+    }
+
+    @Override
+    public Component render(
+        ProxyChatContext context, BiFunction<ProxyChatPlaceHolder, String, Component> resolver) {
+      final List<Component> rendered = new ArrayList<>(children.size());
+
+      for (Node child : children) {
+        rendered.add(child.render(context, resolver));
+      }
+
+      return component.children(rendered);
+    }
+  }
+
+  private static final class FallbackNode implements Node {
+    private final Component component;
+
+    private FallbackNode(Component component) {
+      this.component = component;
+    }
+
+    @Override
+    public Component render(
+        ProxyChatContext context, BiFunction<ProxyChatPlaceHolder, String, Component> resolver) {
+      return PlaceHolderManager.processMessage(component, context, resolver);
+    }
+  }
+}
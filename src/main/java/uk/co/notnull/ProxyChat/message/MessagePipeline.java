@@ -0,0 +1,286 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.placeholder.InvalidContextError;
+import uk.co.notnull.ProxyChat.util.LoggerHelper;
+import uk.co.notnull.ProxyChat.util.StripedExecutor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Processes chat messages off the thread that sent them, in three stages: parsing and filtering
+ * the message, rendering the format and fanning it out to the recipients.<br>
+ * All messages of a sender are processed on the same single threaded lane, so they are delivered
+ * in the order they were sent and every recipient sees them in that order. Lanes have a bounded
+ * queue. Messages for a full lane are rejected instead of blocking the sending thread, which usually
+ * is the event thread of the proxy.<br>
+ * Messages with many recipients can be delivered by several threads at once, see {@link
+ * #fanOut(Collection, Predicate, Consumer)}.<br>
+ * With no threads, messages are processed on the calling thread.
+ */
+public class MessagePipeline {
+  public enum Stage {
+    QUEUE,
+    PARSE,
+    RENDER,
+    FAN_OUT
+  }
+
+  private final StripedExecutor executor;
+  private final ForkJoinPool fanOutPool;
+  private final int parallelFanOutThreshold;
+  private final LongAdder parallelFanOuts = new LongAdder();
+  private final Map<Stage, StageStats> stageStats = new EnumMap<>(Stage.class);
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private volatile boolean shutdown = false;
+
+  public MessagePipeline(int threads, int queueCapacity) {
+    this(threads, queueCapacity, 0);
+  }
+
+  /**
+   * @param threads Number of lanes. 0 processes messages on the calling thread
+   * @param queueCapacity Number of messages that may wait per lane
+   * @param parallelFanOutThreshold Number of possible recipients from which a message is delivered
+   *     by several threads. 0 always delivers on a single thread
+   */
+  public MessagePipeline(int threads, int queueCapacity, int parallelFanOutThreshold) {
+    this.executor =
+        (threads > 0) ? new StripedExecutor("ProxyChat Message Pipeline", threads, queueCapacity) : null;
+    this.parallelFanOutThreshold = parallelFanOutThreshold;
+    this.fanOutPool =
+        (parallelFanOutThreshold > 0)
+            ? new ForkJoinPool(
+                Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                  final ForkJoinWorkerThread thread =
+                      ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                  thread.setName("ProxyChat Fan-out #" + thread.getPoolIndex());
+                  thread.setDaemon(true);
+
+                  return thread;
+                },
+                null,
+                false)
+            : null;
+
+    for (Stage stage : Stage.values()) {
+      stageStats.put(stage, new StageStats());
+    }
+  }
+
+  /**
+   * Queues the processing of a message on the lane of its sender.
+   *
+   * @param sender UUID of the sender, which decides the lane
+   * @param task Processing of the message
+   * @return false if the lane of the sender is full and the message was dropped
+   */
+  public boolean submit(UUID sender, Runnable task) {
+    final long queuedAt = System.nanoTime();
+
+    if (executor == null) {
+      run(task, queuedAt);
+      return true;
+    }
+
+    try {
+      executor.execute(sender, () -> run(task, queuedAt));
+    } catch (RejectedExecutionException e) {
+      if (!shutdown) {
+        rejected.increment();
+        return false;
+      }
+
+      run(task, queuedAt);
+    }
+
+    return true;
+  }
+
+  public <T> T time(Stage stage, Supplier<T> work) {
+    final long start = System.nanoTime();
+
+    try {
+      return work.get();
+    } finally {
+      stageStats.get(stage).record(System.nanoTime() - start);
+    }
+  }
+
+  public void time(Stage stage, Runnable work) {
+    final long start = System.nanoTime();
+
+    try {
+      work.run();
+    } finally {
+      stageStats.get(stage).record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Delivers a message to all candidates accepted by the filter. Above the parallel fan-out
+   * threshold the candidates are split into one partition per fan-out thread, and the partitions
+   * are delivered concurrently.<br>
+   * The matching recipients of each partition are passed to the delivery as one batch, so they can
+   * share a single audience.<br>
+   * Either way this returns once every recipient got the message, so the next message of the same
+   * sender can't overtake it for any recipient.
+   */
+  public void fanOut(
+      Collection<ProxyChatAccount> candidates,
+      Predicate<ProxyChatAccount> filter,
+      Consumer<List<ProxyChatAccount>> delivery) {
+    if ((fanOutPool == null) || (candidates.size() < parallelFanOutThreshold)) {
+      deliver(candidates, filter, delivery);
+      return;
+    }
+
+    final List<ProxyChatAccount> recipients =
+        (candidates instanceof List) ? (List<ProxyChatAccount>) candidates : new ArrayList<>(candidates);
+    final int partitionSize =
+        (recipients.size() + fanOutPool.getParallelism() - 1) / fanOutPool.getParallelism();
+    final List<ForkJoinTask<?>> partitions = new ArrayList<>();
+
+    for (int i = 0; i < recipients.size(); i += partitionSize) {
+      final List<ProxyChatAccount> partition =
+          recipients.subList(i, Math.min(i + partitionSize, recipients.size()));
+
+      partitions.add(fanOutPool.submit(() -> deliver(partition, filter, delivery)));
+    }
+
+    partitions.forEach(ForkJoinTask::join);
+    parallelFanOuts.increment();
+  }
+
+  private static void deliver(
+      Collection<ProxyChatAccount> recipients,
+      Predicate<ProxyChatAccount> filter,
+      Consumer<List<ProxyChatAccount>> delivery) {
+    final List<ProxyChatAccount> matching = new ArrayList<>();
+
+    for (ProxyChatAccount recipient : recipients) {
+      if (filter.test(recipient)) {
+        matching.add(recipient);
+      }
+    }
+
+    if (!matching.isEmpty()) {
+      delivery.accept(matching);
+    }
+  }
+
+  /**
+   * @return The number of messages waiting to be processed
+   */
+  public int getQueueDepth() {
+    return (executor == null) ? 0 : Math.max(0, executor.getQueueDepth());
+  }
+
+  public String getStats() {
+    return "queued="
+        + getQueueDepth()
+        + ", failed="
+        + failed.sum()
+        + ", rejected="
+        + rejected.sum()
+        + ", parallelFanOuts="
+        + parallelFanOuts.sum()
+        + ", "
+        + stageStats.entrySet().stream()
+            .map(entry -> entry.getKey().name().toLowerCase() + " " + entry.getValue())
+            .collect(Collectors.joining(", "));
+  }
+
+  /**
+   * Stops accepting messages and waits for the queued ones to be delivered. Messages submitted
+   * afterwards are processed on the calling thread.
+   */
+  public void shutdown(long timeoutMillis) {
+    shutdown = true;
+
+    try {
+      if ((executor != null) && !executor.shutdown(timeoutMillis)) {
+        LoggerHelper.warning(
+            "Could not deliver all queued chat messages within " + timeoutMillis + "ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (fanOutPool != null) {
+      fanOutPool.shutdown();
+    }
+  }
+
+  private void run(Runnable task, long queuedAt) {
+    stageStats.get(Stage.QUEUE).record(System.nanoTime() - queuedAt);
+
+    try {
+      task.run();
+    } catch (RuntimeException | InvalidContextError e) {
+      failed.increment();
+      LoggerHelper.error("Could not deliver chat message", e);
+    }
+  }
+
+  private static final class StageStats {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+
+    @Override
+    public String toString() {
+      final long samples = count.sum();
+      final double average = (samples == 0) ? 0 : (totalNanos.sum() / (double) samples);
+
+      return String.format(
+          "avg=%.2fms max=%.2fms",
+          average / TimeUnit.MILLISECONDS.toNanos(1),
+          maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  }
+}
@@ -51,6 +51,7 @@ public enum Messages implements Message {
   // Clear Chat
   CLEARED_LOCAL("clearedLocal"),
   CLEARED_GLOBAL("clearedGlobal"),
+  ALREADY_CLEARED("alreadyCleared"),
 
   // Vanish Messages
   ENABLE_VANISH("enableVanish"),
@@ -99,11 +100,13 @@ public enum Messages implements Message {
   ENABLE_CHATLOCK("enableChatlock"),
   DISABLE_CHATLOCK("disableChatlock"),
   CHAT_IS_DISABLED("chatIsLocked"),
+  CHAT_BUSY("chatIsBusy"),
 
   // Misc Messages
   PLUGIN_PREFIX("pluginPrefix"),
   PLUGIN_RELOAD("pluginReloaded"),
   PLUGIN_MODULES("pluginActiveModules"),
+  PLUGIN_STATISTICS("pluginStatistics"),
   PLUGIN_CREDITS("pluginCredits");
 
   private final String stringPath;
@@ -25,6 +25,8 @@ import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 import uk.co.notnull.ProxyChat.account.ProxyChatAccountManager;
+import uk.co.notnull.ProxyChat.account.RecipientIndex;
+import uk.co.notnull.ProxyChat.account.ServerIndex;
 import uk.co.notnull.ProxyChat.api.account.AccountManager;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
 import uk.co.notnull.ProxyChat.api.enums.ChannelType;
@@ -38,15 +40,56 @@ import uk.co.notnull.ProxyChat.module.ProxyChatModuleManager;
 import uk.co.notnull.ProxyChat.api.permission.Permission;
 import uk.co.notnull.ProxyChat.permission.PermissionManager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.function.Predicate;
 
+import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
 import uk.co.notnull.ProxyChat.util.ComponentUtil;
+import uk.co.notnull.ProxyChat.util.LoggerHelper;
 import uk.co.notnull.ProxyChat.util.PredicateUtil;
 
 public final class MessagesService {
+	private static volatile MessagePipeline pipeline = new MessagePipeline(0, 0);
+	private static volatile long pipelineShutdownTimeout = 10000;
+
+	/**
+	 * Replaces the message pipeline. Messages queued on the previous one are delivered first.
+	 *
+	 * @param threads Number of threads processing chat messages. 0 processes them on the sending thread
+	 * @param queueCapacity Number of messages that may wait per thread before further messages are rejected
+	 * @param parallelFanOutThreshold Number of possible recipients from which messages are delivered by several
+	 *                                threads. 0 disables parallel delivery
+	 * @param shutdownTimeoutMillis Maximum time to wait for queued messages when the pipeline is replaced or shut
+	 *                              down
+	 */
+	public static void configurePipeline(int threads, int queueCapacity, int parallelFanOutThreshold,
+										 long shutdownTimeoutMillis) {
+		MessagePipeline previous = pipeline;
+		pipeline = new MessagePipeline(threads, queueCapacity, parallelFanOutThreshold);
+		previous.shutdown(pipelineShutdownTimeout);
+		pipelineShutdownTimeout = shutdownTimeoutMillis;
+	}
+
+	/**
+	 * Delivers all queued messages and processes further messages on the sending thread.
+	 */
+	public static void shutdownPipeline() {
+		MessagePipeline previous = pipeline;
+		pipeline = new MessagePipeline(0, 0);
+		previous.shutdown(pipelineShutdownTimeout);
+	}
+
+	public static MessagePipeline getPipeline() {
+		return pipeline;
+	}
+
 	public static void sendPrivateMessage(CommandSource sender, CommandSource target, String message) throws InvalidContextError {
 		ProxyChatContext context = new Context(sender, target, message);
 		context.setChannel(ChannelType.PRIVATE);
@@ -72,24 +115,26 @@ public final class MessagesService {
 			return;
 		}
 
-		Optional<Component> messageSender = preProcessMessage(context, Format.MESSAGE_SENDER, filterPrivateMessages);
+		// Sender, target and spy copies share the rendered sender and target placeholders
+		AudienceRenderer renderer = new AudienceRenderer(context);
+		Optional<Component> messageSender = preProcessMessage(renderer, Format.MESSAGE_SENDER, filterPrivateMessages);
 
 		if (messageSender.isPresent()) {
 			MessagesService.sendMessage(sender, messageSender.get());
 
-			preProcessMessage(context, Format.MESSAGE_TARGET, filterPrivateMessages)
+			preProcessMessage(renderer, Format.MESSAGE_TARGET, filterPrivateMessages)
 					.ifPresent((Component message) -> MessagesService.sendMessage(target, message));
 
 			if (ModuleManager.isModuleActive(ProxyChatModuleManager.SPY_MODULE)
 					&& !senderAccount.hasPermission(Permission.COMMAND_SOCIALSPY_EXEMPT)) {
 
-				preProcessMessage(context, Format.SOCIAL_SPY, false)
+				preProcessMessage(renderer, Format.SOCIAL_SPY, false)
 						.ifPresent((Component socialSpyMessage) ->
 										   sendToMatchingPlayers(
 												   socialSpyMessage,
+												   ProxyChatAccountManager.getRecipientIndex().getAccounts(RecipientIndex.Group.SOCIAL_SPY),
 												   acc -> (!acc.getUniqueId().equals(senderAccount.getUniqueId()))
-														   && (!acc.getUniqueId().equals(targetAccount.getUniqueId()))
-														   && acc.hasSocialSpyEnabled()));
+														   && (!acc.getUniqueId().equals(targetAccount.getUniqueId()))));
 			}
 		}
 
@@ -125,32 +170,90 @@ public final class MessagesService {
 			return;
 		}
 
+		// Checked before queueing as well, so callers still get the error instead of it being logged on the pipeline
+		Optional<ChannelType> multicastChannel = getMulticastChannel(context.getChannel().get());
+
+		if(multicastChannel.isPresent()) {
+			context.require(multicastChannel.get().getRequirements());
+		}
+
+		ProxyChatAccount sender = context.getSender().orElseThrow();
+		// The pipeline changes the channel of its context, which must not affect the caller
+		ProxyChatContext queuedContext = context.clone();
+
+		if(!pipeline.submit(sender.getUniqueId(), () -> deliverChannelMessage(new AudienceRenderer(queuedContext)))) {
+			ProxyChatAccountManager.getCommandSource(sender)
+					.ifPresent(source -> sendMessage(source, Messages.CHAT_BUSY.get(sender)));
+		}
+	}
+
+	/**
+	 * @return The channel a message of the given channel is also sent to on the servers of the multicast group
+	 */
+	private static Optional<ChannelType> getMulticastChannel(ChannelType channel) {
+		return switch (channel) {
+			case LOCAL -> Optional.of(ChannelType.MULTICAST);
+			case LOCAL_EVENT -> Optional.of(ChannelType.MULTICAST_EVENT);
+			default -> Optional.empty();
+		};
+	}
+
+	private static void deliverChannelMessage(AudienceRenderer renderer) throws InvalidContextError {
+		ProxyChatContext context = renderer.getContext();
 		ProxyChatAccount sender = context.getSender().orElseThrow();
 		Predicate<ProxyChatAccount> recipients = PredicateUtil.getGlobalPredicate();
+		// Server based channels and permission based channels only look at the possible recipients
+		Collection<ProxyChatAccount> candidates = null;
+		ServerIndex serverIndex = ProxyChatAccountManager.getServerIndex();
+		RecipientIndex recipientIndex = ProxyChatAccountManager.getRecipientIndex();
 		ChannelType channel = context.getChannel().orElseThrow();
 
 		switch (channel) {
 			case LOCAL, LOCAL_EVENT -> {
 				RegisteredServer server = context.getServer().orElseThrow();
-				recipients = PredicateUtil.getServerPredicate(server);
-				Predicate<ProxyChatAccount> spyRecipients = PredicateUtil.getInclusiveMulticastPredicate(server).negate();
+				candidates = serverIndex.getAccounts(server.getServerInfo().getName());
+				recipients = account -> true;
 
 				//TODO: Move to module?
 				if (ModuleManager.isModuleActive(ProxyChatModuleManager.SPY_MODULE)) {
-					preProcessMessage(context.clone(), Format.LOCAL_SPY, false)
+					// Parsed without filters, so rendered separately from the channel message
+					preProcessMessage(new AudienceRenderer(context.clone()), Format.LOCAL_SPY, false)
 							.ifPresent((Component message) -> sendToMatchingPlayers(
-									message, ProxyChatAccount::hasLocalSpyEnabled, spyRecipients));
+									message,
+									recipientIndex.getAccounts(RecipientIndex.Group.LOCAL_SPY),
+									PredicateUtil.getInclusiveMulticastPredicate(server).negate()));
 				}
 			}
-			case MULTICAST, MULTICAST_EVENT -> recipients = PredicateUtil.getMulticastPredicate(context.getServer().orElseThrow());
-			case STAFF -> recipients = pp -> pp.hasPermission(Permission.COMMAND_STAFFCHAT_VIEW);
-			case JOIN -> recipients = PredicateUtil.getPermissionPredicate(Permission.MESSAGE_JOIN_VIEW);
-			case LEAVE -> recipients = PredicateUtil.getPermissionPredicate(Permission.MESSAGE_LEAVE_VIEW);
-			case SWITCH -> recipients = PredicateUtil.getPermissionPredicate(Permission.MESSAGE_SWITCH_VIEW);
+			case MULTICAST, MULTICAST_EVENT -> {
+				// Target servers are resolved once from the multicast routing table
+				candidates = serverIndex.getAccounts(PredicateUtil.getMulticastServers(context.getServer().orElseThrow()));
+				recipients = account -> true;
+			}
+			case STAFF -> {
+				candidates = recipientIndex.getAccounts(RecipientIndex.Group.STAFF_CHAT);
+				recipients = account -> true;
+			}
+			case JOIN -> {
+				candidates = recipientIndex.getAccounts(RecipientIndex.Group.JOIN_VIEW);
+				recipients = account -> true;
+			}
+			case LEAVE -> {
+				candidates = recipientIndex.getAccounts(RecipientIndex.Group.LEAVE_VIEW);
+				recipients = account -> true;
+			}
+			case SWITCH -> {
+				candidates = recipientIndex.getAccounts(RecipientIndex.Group.SWITCH_VIEW);
+				recipients = account -> true;
+			}
 		}
 
 		if(channel.isIgnorable()) {
-			recipients = recipients.and(PredicateUtil.getNotIgnoredPredicate(sender));
+			// Usually empty, in which case there is nothing to check per recipient
+			Set<UUID> ignoringAccounts = ProxyChatModuleManager.IGNORING_MODULE.getIgnoringAccounts(sender);
+
+			if(!ignoringAccounts.isEmpty()) {
+				recipients = recipients.and(account -> !ignoringAccounts.contains(account.getUniqueId()));
+			}
 		}
 
 		// This condition checks if the player is present and vanished
@@ -159,20 +262,21 @@ public final class MessagesService {
 		}
 
 		Predicate<ProxyChatAccount> finalRecipients = recipients;
-		preProcessMessage(context).ifPresent((Component message) -> sendToMatchingPlayers(message, finalRecipients));
+		Collection<ProxyChatAccount> finalCandidates = (candidates != null) ? candidates : AccountManager.getPlayerAccounts();
+		preProcessMessage(renderer).ifPresent((Component message) -> pipeline.time(
+				MessagePipeline.Stage.FAN_OUT, () -> sendToMatchingPlayers(message, finalCandidates, finalRecipients)));
 
 		if(channel.isLoggable()) {
 			ChatLoggingManager.logMessage(context);
 		}
 
-		if(channel.equals(ChannelType.LOCAL)) {
-			context.setChannel(ChannelType.MULTICAST);
-			sendChannelMessage(context);
-		}
+		// Already on the pipeline, so continued here instead of being queued again
+		Optional<ChannelType> multicastChannel = getMulticastChannel(channel);
 
-		if(channel.equals(ChannelType.LOCAL_EVENT)) {
-			context.setChannel(ChannelType.MULTICAST_EVENT);
-			sendChannelMessage(context);
+		if(multicastChannel.isPresent()) {
+			context.setChannel(multicastChannel.get());
+			context.getChannel().orElseThrow().checkRequirements(context);
+			deliverChannelMessage(renderer);
 		}
 	}
 
@@ -187,18 +291,31 @@ public final class MessagesService {
 	public static void sendTransparentMessage(ProxyChatContext context) throws InvalidContextError {
 		context.require(ProxyChatContext.HAS_SENDER, ProxyChatContext.HAS_MESSAGE);
 
+		ProxyChatAccount account = context.getSender().orElseThrow();
+		ProxyChatContext queuedContext = context.clone();
+
+		if(!pipeline.submit(account.getUniqueId(), () -> deliverTransparentMessage(queuedContext))) {
+			// Already sent to the server, so the sender isn't asked to try again. Only the log and spy copies are missing
+			LoggerHelper.warning("Chat pipeline is full, could not log or spy on a message from " + account.getName()
+										 + ": " + context.getMessage().orElse(""));
+		}
+	}
+
+	private static void deliverTransparentMessage(ProxyChatContext context) {
 		ProxyChatAccount account = context.getSender().orElseThrow();
 		RegisteredServer localServer = context.getServer().orElse(account.getServer().orElse(null));
-		Predicate<ProxyChatAccount> isLocal = PredicateUtil.getServerPredicate(localServer);
 
 		ChatLoggingManager.logMessage(context);
 
 		//TODO: Move to module?
 		if (ModuleManager.isModuleActive(ProxyChatModuleManager.SPY_MODULE)
 				&& !account.hasPermission(Permission.COMMAND_LOCALSPY_EXEMPT)) {
-			preProcessMessage(context, Format.LOCAL_SPY, false)
+			preProcessMessage(new AudienceRenderer(context), Format.LOCAL_SPY, false)
 					.ifPresent((Component message) ->
-									   sendToMatchingPlayers(message, ProxyChatAccount::hasLocalSpyEnabled, isLocal.negate()));
+									   sendToMatchingPlayers(
+											   message,
+											   ProxyChatAccountManager.getRecipientIndex().getAccounts(RecipientIndex.Group.LOCAL_SPY),
+											   PredicateUtil.getServerPredicate(localServer).negate()));
 		}
 	}
 
@@ -218,26 +335,30 @@ public final class MessagesService {
 		sendChannelMessage(player, ChannelType.SWITCH, null); //FIXME: Server?
 	}
 
-	private static Optional<Component> preProcessMessage(ProxyChatContext context) throws InvalidContextError {
+	private static Optional<Component> preProcessMessage(AudienceRenderer renderer) throws InvalidContextError {
+		ProxyChatContext context = renderer.getContext();
 		context.require(ProxyChatContext.HAS_CHANNEL);
-		return preProcessMessage(context, Format.getFormatForChannel(context.getChannel().orElseThrow()), true);
+		return preProcessMessage(renderer, Format.getFormatForChannel(context.getChannel().orElseThrow()), true);
 	}
 
-	private static Optional<Component> preProcessMessage(ProxyChatContext context, Format format, boolean runFilters) {
-		return preProcessMessage(context, format, runFilters, false);
+	private static Optional<Component> preProcessMessage(AudienceRenderer renderer, Format format, boolean runFilters) {
+		return preProcessMessage(renderer, format, runFilters, false);
 	}
 
-	private static Optional<Component> preProcessMessage(ProxyChatContext context, Format format,
+	private static Optional<Component> preProcessMessage(AudienceRenderer renderer, Format format,
 			boolean runFilters, boolean ignoreBlockMessageExceptions) throws InvalidContextError {
+		ProxyChatContext context = renderer.getContext();
+
 		if(context.hasMessage()) {
 			context.require(ProxyChatContext.HAS_SENDER);
 
-			if (!parseMessage(context, runFilters)) {
+			if (!pipeline.time(MessagePipeline.Stage.PARSE, () -> parseMessage(context, runFilters))) {
 				return Optional.empty();
 			}
 		}
 
-		return Optional.of(PlaceHolderUtil.getFullFormatMessage(format, context));
+		return Optional.of(pipeline.time(
+				MessagePipeline.Stage.RENDER, () -> renderer.render(format)));
 	}
 
 	public static boolean parseMessage(ProxyChatContext context, boolean runFilters) {
@@ -280,16 +401,47 @@ public final class MessagesService {
 	@SafeVarargs
 	@SuppressWarnings("varargs")
 	public static void sendToMatchingPlayers(Component finalMessage, Predicate<ProxyChatAccount>... playerFilters) {
+		sendToMatchingPlayers(finalMessage, AccountManager.getPlayerAccounts(), playerFilters);
+	}
+
+	/**
+	 * Sends a message to the given candidates that match all filters. Used when the possible
+	 * recipients are already known, so the filters don't need to run for every online player.
+	 */
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static void sendToMatchingPlayers(Component finalMessage, Collection<ProxyChatAccount> candidates,
+											 Predicate<ProxyChatAccount>... playerFilters) {
 		Predicate<ProxyChatAccount> playerFiler =
 				Arrays.stream(playerFilters).reduce(Predicate::and).orElse(acc -> true);
 
-		AccountManager.getPlayerAccounts().stream()
-				.filter(playerFiler)
-				.forEach(account ->
-								 ProxyChatAccountManager.getCommandSource(account).ifPresent(commandSource ->
-																									  MessagesService.sendMessage(
-																											  commandSource,
-																											  finalMessage)));
+		pipeline.fanOut(candidates, playerFiler,
+						recipients -> MessagesService.sendMessage(getAudience(recipients), finalMessage));
+	}
+
+	/**
+	 * Creates a single audience of all online players matching all filters, so a message can be
+	 * sent to all of them with one call.<br>
+	 * The audience only forwards to each player, so Velocity still serializes the message once per
+	 * player.
+	 */
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static Audience getMatchingAudience(Predicate<ProxyChatAccount>... playerFilters) {
+		Predicate<ProxyChatAccount> playerFiler =
+				Arrays.stream(playerFilters).reduce(Predicate::and).orElse(acc -> true);
+
+		return getAudience(AccountManager.getPlayerAccounts().stream().filter(playerFiler).toList());
+	}
+
+	private static Audience getAudience(Collection<ProxyChatAccount> recipients) {
+		List<Audience> audiences = new ArrayList<>(recipients.size());
+
+		for (ProxyChatAccount recipient : recipients) {
+			ProxyChatAccountManager.getCommandSource(recipient).ifPresent(audiences::add);
+		}
+
+		return Audience.audience(audiences);
 	}
 
 	public static void sendMessage(CommandSource recipient, Component message) {
@@ -298,6 +450,12 @@ public final class MessagesService {
 		recipient.sendMessage(message);
 	}
 
+	public static void sendMessage(Audience recipients, Component message) {
+		if ((message == null)) return;
+
+		recipients.sendMessage(message);
+	}
+
 	private MessagesService() {
 		throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
 	}
@@ -29,6 +29,8 @@ import uk.co.notnull.ProxyChat.config.Configuration;
 import dev.aura.lib.messagestranslator.MessagesTranslator;
 import dev.aura.lib.messagestranslator.PluginMessagesTranslator;
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.kyori.adventure.text.Component;
 import uk.co.notnull.ProxyChat.util.ComponentUtil;
 
@@ -37,12 +39,14 @@ public final class PlaceHolderUtil {
   private static final String LANGUAGE = "Language";
   private static Config formatsBase;
   private static MessagesTranslator messageBase;
+  private static final Map<Format, FormatTemplate> formatTemplates = new ConcurrentHashMap<>();
 
   private static final char placeholderChar = PlaceHolderManager.placeholderChar;
   private static final String placeholderString = String.valueOf(placeholderChar);
 
   public static void clearConfigSections() {
     formatsBase = null;
+    formatTemplates.clear();
     messageBase = null;
   }
 
@@ -53,6 +57,7 @@ public final class PlaceHolderUtil {
 
   public static void loadFormatsBase() {
     formatsBase = Configuration.get().getConfig(FORMATS);
+    formatTemplates.clear();
   }
 
   public static void loadMessageBase() {
@@ -64,6 +69,25 @@ public final class PlaceHolderUtil {
   }
 
   public static Component getFormat(Format format) {
+    return getFormatTemplate(format).getComponent();
+  }
+
+  /**
+   * @return The format compiled into a template, which is kept until the config is reloaded
+   */
+  public static FormatTemplate getFormatTemplate(Format format) {
+    FormatTemplate template = formatTemplates.get(format);
+
+    if (template == null) {
+      // Not compiled within computeIfAbsent, as parsing may load the formats and clear the templates
+      template = FormatTemplate.compile(parseFormat(format));
+      formatTemplates.put(format, template);
+    }
+
+    return template;
+  }
+
+  private static Component parseFormat(Format format) {
     try {
       if (formatsBase == null) {
         loadFormatsBase();
@@ -112,7 +136,7 @@ public final class PlaceHolderUtil {
   }
 
   public static Component getFullFormatMessage(Format format, ProxyChatContext context) {
-    return formatMessage(getFormat(format), context);
+    return getFormatTemplate(format).render(context);
   }
 
   public static String getFullFormatMessageRaw(Format format, ProxyChatContext context) {
@@ -232,7 +232,8 @@ public final class PlaceHolders {
 
     PlaceHolderManager.registerPlaceholder(
         new PlaceHolder(
-                "channel", context -> context.getChannel().get().name(), ProxyChatContext.HAS_CHANNEL));
+                "channel", context -> context.getChannel().get().name(), ProxyChatContext.HAS_CHANNEL)
+            .setChannelDependent(true));
     PlaceHolderManager.registerPlaceholder(
         new PlaceHolder(
                 "message",
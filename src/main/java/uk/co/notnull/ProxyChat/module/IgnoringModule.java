@@ -21,10 +21,14 @@
 
 package uk.co.notnull.ProxyChat.module;
 
+import uk.co.notnull.ProxyChat.account.ProxyChatAccountManager;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
 import uk.co.notnull.ProxyChat.api.permission.Permission;
 import uk.co.notnull.ProxyChat.command.IgnoreCommand;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
 import java.util.function.Predicate;
 
 public class IgnoringModule extends Module {
@@ -47,10 +51,23 @@ public class IgnoringModule extends Module {
   }
 
   public Predicate<ProxyChatAccount> getNotIgnoredPredicate(ProxyChatAccount sender) {
+		final Set<UUID> ignoringAccounts = getIgnoringAccounts(sender);
+
+		return ignoringAccounts.isEmpty()
+				? account -> true
+				: account -> !ignoringAccounts.contains(account.getUniqueId());
+	}
+
+	/**
+	 * Returns the loaded accounts that should not receive ignorable messages from the given sender.
+	 *
+	 * @return A read-only set of UUIDs, empty if ignoring doesn't apply to the sender
+	 */
+	public Set<UUID> getIgnoringAccounts(ProxyChatAccount sender) {
 		return (isEnabled()
 				&& getModuleSection().getBoolean("ignoreChatMessages")
 				&& !sender.hasPermission(Permission.BYPASS_IGNORE))
-				? account -> !account.hasIgnored(sender)
-				: account -> true;
+				? ProxyChatAccountManager.getIgnoreIndex().getIgnoringAccounts(sender.getUniqueId())
+				: Collections.emptySet();
 	}
 }
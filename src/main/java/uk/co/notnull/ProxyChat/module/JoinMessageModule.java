@@ -22,10 +22,17 @@
 package uk.co.notnull.ProxyChat.module;
 
 import uk.co.notnull.ProxyChat.ProxyChat;
+import uk.co.notnull.ProxyChat.account.RecipientIndex;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
 import uk.co.notnull.ProxyChat.listener.JoinMessageListener;
+import uk.co.notnull.ProxyChat.message.AnnouncementCoalescer;
+import uk.co.notnull.ProxyChat.message.Format;
+
+import java.util.concurrent.TimeUnit;
 
 public class JoinMessageModule extends Module {
   private JoinMessageListener joinMessageListener;
+  private AnnouncementCoalescer coalescer;
 
   @Override
   public String getName() {
@@ -34,7 +41,15 @@ public class JoinMessageModule extends Module {
 
   @Override
   public void onEnable() {
-    joinMessageListener = new JoinMessageListener();
+    coalescer =
+        new AnnouncementCoalescer(
+            ChannelType.JOIN,
+            Format.JOIN_SUMMARY,
+            RecipientIndex.Group.JOIN_VIEW,
+            getModuleSection().getInt("coalesceThreshold"),
+            getModuleSection().getDuration("coalesceWindow", TimeUnit.MILLISECONDS));
+    coalescer.start();
+    joinMessageListener = new JoinMessageListener(coalescer);
 
     ProxyChat.getInstance().getProxy()
         .getEventManager()
@@ -44,5 +59,10 @@ public class JoinMessageModule extends Module {
   @Override
   public void onDisable() {
     ProxyChat.getInstance().getProxy().getEventManager().unregisterListener(ProxyChat.getInstance(), joinMessageListener);
+    coalescer.stop();
+  }
+
+  public AnnouncementCoalescer getCoalescer() {
+    return coalescer;
   }
 }
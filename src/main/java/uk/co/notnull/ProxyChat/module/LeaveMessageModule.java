@@ -22,10 +22,17 @@
 package uk.co.notnull.ProxyChat.module;
 
 import uk.co.notnull.ProxyChat.ProxyChat;
+import uk.co.notnull.ProxyChat.account.RecipientIndex;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
 import uk.co.notnull.ProxyChat.listener.LeaveMessageListener;
+import uk.co.notnull.ProxyChat.message.AnnouncementCoalescer;
+import uk.co.notnull.ProxyChat.message.Format;
+
+import java.util.concurrent.TimeUnit;
 
 public class LeaveMessageModule extends Module {
   private LeaveMessageListener leaveMessageListener;
+  private AnnouncementCoalescer coalescer;
 
   @Override
   public String getName() {
@@ -34,7 +41,15 @@ public class LeaveMessageModule extends Module {
 
   @Override
   public void onEnable() {
-    leaveMessageListener = new LeaveMessageListener();
+    coalescer =
+        new AnnouncementCoalescer(
+            ChannelType.LEAVE,
+            Format.LEAVE_SUMMARY,
+            RecipientIndex.Group.LEAVE_VIEW,
+            getModuleSection().getInt("coalesceThreshold"),
+            getModuleSection().getDuration("coalesceWindow", TimeUnit.MILLISECONDS));
+    coalescer.start();
+    leaveMessageListener = new LeaveMessageListener(coalescer);
 
     ProxyChat.getInstance().getProxy()
         .getEventManager()
@@ -44,5 +59,10 @@ public class LeaveMessageModule extends Module {
   @Override
   public void onDisable() {
     ProxyChat.getInstance().getProxy().getEventManager().unregisterListener(ProxyChat.getInstance(), leaveMessageListener);
+    coalescer.stop();
+  }
+
+  public AnnouncementCoalescer getCoalescer() {
+    return coalescer;
   }
 }
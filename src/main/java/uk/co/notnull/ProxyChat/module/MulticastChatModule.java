@@ -21,10 +21,19 @@
 
 package uk.co.notnull.ProxyChat.module;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MulticastChatModule extends Module {
   private List<List<String>> multiCastServerGroups = null;
+  // Server name -> names of the servers receiving its messages. Replaced as a whole on reload
+  private volatile Map<String, Set<String>> routingTable = ImmutableMap.of();
 
   @Override
   public String getName() {
@@ -37,14 +46,51 @@ public class MulticastChatModule extends Module {
     multiCastServerGroups = getModuleSection().getList("serverLists").stream()
             .map(configValue -> (List<String>) configValue.unwrapped())
             .toList();
+    routingTable = buildRoutingTable(multiCastServerGroups);
   }
 
   @Override
   public void onDisable() {
     multiCastServerGroups = null;
+    routingTable = ImmutableMap.of();
   }
 
   public List<List<String>> getMultiCastServerGroups() {
     return multiCastServerGroups;
   }
+
+  /**
+   * @return The names of the servers that receive multicast messages sent on the given server, not
+   *     including the server itself
+   */
+  public Set<String> getPeerServers(String server) {
+    return routingTable.getOrDefault(server, ImmutableSet.of());
+  }
+
+  /**
+   * Compiles the server groups into a routing table. A server receives messages from the servers of
+   * the first group it is listed in.
+   */
+  @VisibleForTesting
+  static Map<String, Set<String>> buildRoutingTable(List<List<String>> serverGroups) {
+    final Map<String, Set<String>> peers = new HashMap<>();
+    final Set<String> assigned = new LinkedHashSet<>();
+
+    for (List<String> group : serverGroups) {
+      for (String target : group) {
+        if (!assigned.add(target)) continue;
+
+        for (String source : group) {
+          if (!source.equals(target)) {
+            peers.computeIfAbsent(source, key -> new LinkedHashSet<>()).add(target);
+          }
+        }
+      }
+    }
+
+    final ImmutableMap.Builder<String, Set<String>> table = ImmutableMap.builder();
+    peers.forEach((source, targets) -> table.put(source, ImmutableSet.copyOf(targets)));
+
+    return table.build();
+  }
 }
@@ -22,10 +22,17 @@
 package uk.co.notnull.ProxyChat.module;
 
 import uk.co.notnull.ProxyChat.ProxyChat;
+import uk.co.notnull.ProxyChat.account.RecipientIndex;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
 import uk.co.notnull.ProxyChat.listener.ServerSwitchListener;
+import uk.co.notnull.ProxyChat.message.AnnouncementCoalescer;
+import uk.co.notnull.ProxyChat.message.Format;
+
+import java.util.concurrent.TimeUnit;
 
 public class ServerSwitchModule extends Module {
   private ServerSwitchListener serverSwitchListener;
+  private AnnouncementCoalescer coalescer;
 
   @Override
   public String getName() {
@@ -34,7 +41,15 @@ public class ServerSwitchModule extends Module {
 
   @Override
   public void onEnable() {
-    serverSwitchListener = new ServerSwitchListener();
+    coalescer =
+        new AnnouncementCoalescer(
+            ChannelType.SWITCH,
+            Format.SERVER_SWITCH_SUMMARY,
+            RecipientIndex.Group.SWITCH_VIEW,
+            getModuleSection().getInt("coalesceThreshold"),
+            getModuleSection().getDuration("coalesceWindow", TimeUnit.MILLISECONDS));
+    coalescer.start();
+    serverSwitchListener = new ServerSwitchListener(coalescer);
 
     ProxyChat.getInstance().getProxy()
         .getEventManager()
@@ -44,5 +59,10 @@ public class ServerSwitchModule extends Module {
   @Override
   public void onDisable() {
     ProxyChat.getInstance().getProxy().getEventManager().unregisterListener(ProxyChat.getInstance(), serverSwitchListener);
+    coalescer.stop();
+  }
+
+  public AnnouncementCoalescer getCoalescer() {
+    return coalescer;
   }
 }
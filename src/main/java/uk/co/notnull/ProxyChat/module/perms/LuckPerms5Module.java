@@ -21,7 +21,12 @@
 
 package uk.co.notnull.ProxyChat.module.perms;
 
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
 import uk.co.notnull.ProxyChat.ProxyChat;
+import uk.co.notnull.ProxyChat.account.PermissionSnapshot;
+import uk.co.notnull.ProxyChat.account.ProxyChatAccountManager;
 import uk.co.notnull.ProxyChat.api.hook.HookManager;
 import uk.co.notnull.ProxyChat.config.Configuration;
 import uk.co.notnull.ProxyChat.hook.LuckPerms5Hook;
@@ -29,6 +34,7 @@ import uk.co.notnull.ProxyChat.util.ClassUtil;
 
 public class LuckPerms5Module extends PermissionPluginModule {
   private LuckPerms5Hook hook;
+  private EventSubscription<UserDataRecalculateEvent> recalculateSubscription;
 
   @Override
   public String getName() {
@@ -45,16 +51,36 @@ public class LuckPerms5Module extends PermissionPluginModule {
     final boolean fixContext =
         Configuration.get().getBoolean("PrefixSuffixSettings.fixLuckPermsContext");
 
-    LuckPerms5Hook hook = new LuckPerms5Hook(fixContext);
+    hook = new LuckPerms5Hook(fixContext);
     ProxyChat.getInstance().getProxy()
         .getEventManager()
         .register(ProxyChat.getInstance(), hook);
 
     HookManager.addHook(getName(), hook);
+
+    // Cached permissions and prefixes are dropped whenever LuckPerms recalculates them, so they
+    // don't expire
+    recalculateSubscription =
+        LuckPermsProvider.get()
+            .getEventBus()
+            .subscribe(
+                ProxyChat.getInstance(),
+                UserDataRecalculateEvent.class,
+                event -> {
+                  ProxyChatAccountManager.invalidatePermissions(event.getUser().getUniqueId());
+                  HookManager.invalidate(event.getUser().getUniqueId());
+                });
+    PermissionSnapshot.setInvalidatedByEvents(true);
   }
 
   @Override
   public void onDisable() {
+    if(recalculateSubscription != null) {
+      PermissionSnapshot.setInvalidatedByEvents(false);
+      recalculateSubscription.close();
+      recalculateSubscription = null;
+    }
+
     if(hook != null) {
       ProxyChat.getInstance().getProxy()
         .getEventManager()
@@ -23,7 +23,6 @@ package uk.co.notnull.ProxyChat.permission;
 
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.proxy.Player;
-import uk.co.notnull.ProxyChat.account.ProxyChatAccountManager;
 import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
 import uk.co.notnull.ProxyChat.api.permission.Permission;
 import uk.co.notnull.ProxyChat.message.Messages;
@@ -40,8 +39,8 @@ public final class PermissionManager {
   }
 
   public static boolean hasPermissionNoMessage(ProxyChatAccount account, Permission permission) {
-    return hasPermissionNoMessage(
-			ProxyChatAccountManager.getCommandSource(account).orElseThrow(), permission);
+    // Accounts cache their permissions
+    return account.hasPermission(permission);
   }
 
   public static boolean hasPermission(Player player, Permission permission) {
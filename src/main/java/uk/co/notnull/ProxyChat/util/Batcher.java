@@ -0,0 +1,119 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects items and hands them to a consumer in batches. A batch is handed over once it is full,
+ * or once the window that started with its first item has passed.<br>
+ * The consumer is called on the thread that filled the batch, or on the batcher's own thread when
+ * the window passes, so it should hand longer work to an executor.
+ *
+ * @param <T> Type of the collected items
+ */
+public class Batcher<T> {
+  private final Consumer<List<T>> consumer;
+  private final ScheduledExecutorService executor;
+  private final Object lock = new Object();
+  private List<T> batch = new ArrayList<>();
+  private ScheduledFuture<?> dispatchTask;
+  private volatile long windowMillis;
+  private volatile int maxBatchSize;
+
+  public Batcher(String name, Consumer<List<T>> consumer) {
+    this.consumer = consumer;
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat(name).setDaemon(true).build());
+  }
+
+  /**
+   * Changes the batch limits. Items already waiting are handed over right away.
+   *
+   * @param windowMillis Maximum time an item waits for more items to arrive. 0 disables batching
+   * @param maxBatchSize Number of items that causes a batch to be handed over early
+   */
+  public void configure(long windowMillis, int maxBatchSize) {
+    this.windowMillis = Math.max(0, windowMillis);
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+
+    dispatch();
+  }
+
+  /**
+   * @return Whether items are batched at all. If not, callers should handle items directly
+   */
+  public boolean isEnabled() {
+    return windowMillis > 0 && maxBatchSize > 1;
+  }
+
+  public void add(T item) {
+    List<T> fullBatch = null;
+
+    synchronized (lock) {
+      batch.add(item);
+
+      if (batch.size() >= maxBatchSize) {
+        fullBatch = takeBatch();
+      } else if (dispatchTask == null) {
+        dispatchTask = executor.schedule(this::dispatch, windowMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    if (fullBatch != null) {
+      consumer.accept(fullBatch);
+    }
+  }
+
+  /** Hands over the waiting items without waiting for the window to pass. */
+  public void dispatch() {
+    final List<T> waiting;
+
+    synchronized (lock) {
+      waiting = takeBatch();
+    }
+
+    if (!waiting.isEmpty()) {
+      consumer.accept(waiting);
+    }
+  }
+
+  private List<T> takeBatch() {
+    if (dispatchTask != null) {
+      dispatchTask.cancel(false);
+      dispatchTask = null;
+    }
+
+    final List<T> taken = batch;
+    batch = new ArrayList<>();
+
+    return taken;
+  }
+}
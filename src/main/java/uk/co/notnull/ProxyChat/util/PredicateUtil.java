@@ -28,6 +28,7 @@ import uk.co.notnull.ProxyChat.api.permission.Permission;
 import uk.co.notnull.ProxyChat.module.ProxyChatModuleManager;
 
 import java.util.List;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -72,29 +73,37 @@ public class PredicateUtil {
 	}
 
 	public static Predicate<ProxyChatAccount> getMulticastPredicate(RegisteredServer source) {
-		List<List<String>> multiCastServerGroups = ProxyChatModuleManager.MULTICAST_CHAT_MODULE.getMultiCastServerGroups();
+		Predicate<String> serverPredicate = getMulticastServerPredicate(source);
 
-		if (multiCastServerGroups == null) {
-			return account -> false;
-		} else {
-			return account -> {
-				final RegisteredServer server = account.getServer().orElse(null);
+		return account -> {
+			final RegisteredServer server = account.getServer().orElse(null);
+
+			return server != null && serverPredicate.test(server.getServerInfo().getName());
+		};
+	}
 
-				if(server == null || server.equals(source)) {
-					return false;
-				}
+	/**
+	 * Server name version of {@link #getMulticastPredicate(RegisteredServer)}, for checking whole
+	 * servers at once.
+	 */
+	public static Predicate<String> getMulticastServerPredicate(RegisteredServer source) {
+		return getMulticastServers(source)::contains;
+	}
 
-				final String accountServerName = server.getServerInfo().getName();
+	/**
+	 * @return The names of the servers receiving multicast messages sent on the given server
+	 */
+	public static Set<String> getMulticastServers(RegisteredServer source) {
+		return ProxyChatModuleManager.MULTICAST_CHAT_MODULE.getPeerServers(source.getServerInfo().getName());
+	}
 
-				for (List<String> group : multiCastServerGroups) {
-					if (group.contains(accountServerName)) {
-						return group.contains(source.getServerInfo().getName());
-					}
-				}
+	/**
+	 * Server name version of {@link #getInclusiveMulticastPredicate(RegisteredServer)}.
+	 */
+	public static Predicate<String> getInclusiveMulticastServerPredicate(RegisteredServer server) {
+		final String serverName = server.getServerInfo().getName();
 
-				return false;
-			};
-		}
+		return getMulticastServerPredicate(server).or(serverName::equals);
 	}
 
 	public static Predicate<ProxyChatAccount> getInclusiveMulticastPredicate(RegisteredServer server) {
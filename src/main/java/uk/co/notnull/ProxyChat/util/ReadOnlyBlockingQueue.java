@@ -0,0 +1,114 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.util;
+
+import com.google.common.collect.Iterators;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read-only {@link BlockingQueue} view of another collection, for API methods that return a queue
+ * while the data is kept in a different collection type. Lookups go straight to the backing
+ * collection, all modifications throw {@link UnsupportedOperationException}.
+ */
+public class ReadOnlyBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+  private final Collection<E> backing;
+
+  public ReadOnlyBlockingQueue(Collection<E> backing) {
+    this.backing = backing;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return Iterators.unmodifiableIterator(backing.iterator());
+  }
+
+  @Override
+  public int size() {
+    return backing.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return backing.isEmpty();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return backing.contains(o);
+  }
+
+  @Override
+  public E peek() {
+    final Iterator<E> iterator = backing.iterator();
+
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return 0;
+  }
+
+  @Override
+  public boolean offer(E e) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void put(E e) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public E poll() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public E take() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed number of single threaded lanes. Tasks submitted with the same key always
+ * end up on the same lane, so they run one after another in submission order, while tasks for
+ * different keys can run in parallel.
+ */
+public class StripedExecutor {
+  private final ExecutorService[] lanes;
+
+  public StripedExecutor(String name, int laneCount) {
+    lanes = new ExecutorService[laneCount];
+
+    for (int i = 0; i < laneCount; i++) {
+      lanes[i] =
+          Executors.newSingleThreadExecutor(
+              new ThreadFactoryBuilder().setNameFormat(name + " #" + i).setDaemon(true).build());
+    }
+  }
+
+  /**
+   * Creates lanes that hold at most {@code queueCapacity} waiting tasks each. Submitting to a full
+   * lane throws a {@link RejectedExecutionException} instead of blocking, so a busy lane never holds
+   * up the submitting thread.
+   */
+  public StripedExecutor(String name, int laneCount, int queueCapacity) {
+    lanes = new ExecutorService[laneCount];
+
+    for (int i = 0; i < laneCount; i++) {
+      lanes[i] =
+          new ThreadPoolExecutor(
+              1,
+              1,
+              0,
+              TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+              new ThreadFactoryBuilder().setNameFormat(name + " #" + i).setDaemon(true).build());
+    }
+  }
+
+  public void execute(Object key, Runnable task) {
+    getLane(key).execute(task);
+  }
+
+  public ExecutorService getLane(Object key) {
+    return lanes[Math.floorMod(key.hashCode(), lanes.length)];
+  }
+
+  public int getLaneCount() {
+    return lanes.length;
+  }
+
+  /**
+   * @return The number of tasks waiting on all lanes, or -1 if the lanes don't report it
+   */
+  public int getQueueDepth() {
+    int depth = 0;
+
+    for (ExecutorService lane : lanes) {
+      if (!(lane instanceof ThreadPoolExecutor)) return -1;
+
+      depth += ((ThreadPoolExecutor) lane).getQueue().size();
+    }
+
+    return depth;
+  }
+
+  /**
+   * Stops accepting tasks and waits for the waiting ones to finish.
+   *
+   * @return Whether all tasks finished within the timeout
+   */
+  public boolean shutdown(long timeoutMillis) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+    for (ExecutorService lane : lanes) {
+      lane.shutdown();
+    }
+
+    for (ExecutorService lane : lanes) {
+      if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import uk.co.notnull.ProxyChat.TestHelper;
+import uk.co.notnull.ProxyChat.api.account.AccountInfo;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import uk.co.notnull.ProxyChat.module.Module;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccountLogStorageTest {
+  private static final int segmentSize = 4096;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    Module.setTest_mode(true);
+
+    TestHelper.initProxyChat();
+  }
+
+  private static long countSegments(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+
+  @Test
+  public void loadAndSaveTest() throws IOException {
+    final Path directory = folder.newFolder("accounts").toPath();
+    final UUID testUUID = UUID.randomUUID();
+    final UUID ignoredUUID = UUID.randomUUID();
+
+    AccountLogStorage accountStorage = new AccountLogStorage(directory, segmentSize, 0.5);
+    AccountInfo accountInfo = accountStorage.load(testUUID);
+    ProxyChatAccount account = accountInfo.getAccount();
+
+    assertTrue("Should be new account", accountInfo.isNewAccount());
+
+    account.setChannelType(ChannelType.STAFF);
+    account.addIgnore(ignoredUUID);
+    accountStorage.save(account);
+    accountStorage.close();
+
+    accountStorage = new AccountLogStorage(directory, segmentSize, 0.5);
+    AccountInfo accountInfo2 = accountStorage.load(testUUID);
+    ProxyChatAccount account2 = accountInfo2.getAccount();
+
+    assertFalse("Should not be new account", accountInfo2.isNewAccount());
+    assertEquals(ChannelType.STAFF, account2.getChannelType());
+    assertTrue("Should still ignore", account2.hasIgnored(ignoredUUID));
+
+    accountStorage.close();
+  }
+
+  @Test
+  public void compactionTest() throws IOException {
+    final Path directory = folder.newFolder("accounts").toPath();
+    final AccountLogStorage accountStorage = new AccountLogStorage(directory, segmentSize, 0.5);
+    final ProxyChatAccount account = accountStorage.load(UUID.randomUUID()).getAccount();
+
+    // Every save makes the previous record dead, so this fills several segments with dead data
+    for (int i = 0; i < 500; i++) {
+      account.setMutedUntil(i);
+      accountStorage.save(account);
+    }
+
+    accountStorage.compact();
+
+    assertTrue("Dead segments should be deleted", countSegments(directory) <= 2);
+    assertEquals(
+        new Timestamp(499),
+        accountStorage.load(account.getUniqueId()).getAccount().getMutedUntil());
+
+    accountStorage.close();
+  }
+
+  @Test
+  public void importTest() throws IOException {
+    final Path userData = folder.newFolder("userdata").toPath();
+    final Path directory = folder.newFolder("accounts").toPath();
+    final UUID testUUID = UUID.randomUUID();
+
+    try (ObjectOutputStream out =
+        new ObjectOutputStream(Files.newOutputStream(userData.resolve(testUUID + ".sav")))) {
+      new AccountRecord(
+              "Player",
+              ChannelType.GLOBAL,
+              false,
+              true,
+              false,
+              false,
+              Collections.emptyList(),
+              new Timestamp(0))
+          .writeSerialized(out);
+    }
+
+    final AccountLogStorage accountStorage = new AccountLogStorage(directory, segmentSize, 0.5);
+
+    assertEquals(1, accountStorage.importFileStorage(userData));
+    assertTrue(
+        "Old files should be kept for file storage",
+        Files.exists(userData.resolve(testUUID + ".sav")));
+    assertEquals(ChannelType.GLOBAL, accountStorage.load(testUUID).getAccount().getChannelType());
+    assertEquals("Should only import once", 0, accountStorage.importFileStorage(userData));
+
+    accountStorage.close();
+  }
+}
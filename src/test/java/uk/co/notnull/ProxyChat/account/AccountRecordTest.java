@@ -0,0 +1,128 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import uk.co.notnull.ProxyChat.TestHelper;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import uk.co.notnull.ProxyChat.module.Module;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AccountRecordTest {
+  private static final AccountRecord record =
+      new AccountRecord(
+          "Player",
+          ChannelType.STAFF,
+          true,
+          false,
+          true,
+          false,
+          Arrays.asList(UUID.randomUUID(), UUID.randomUUID()),
+          new Timestamp(1234567890123L));
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    Module.setTest_mode(true);
+
+    TestHelper.initProxyChat();
+  }
+
+  private static void assertRecordEquals(AccountRecord expected, AccountRecord actual) {
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getChannelType(), actual.getChannelType());
+    assertEquals(expected.isVanished(), actual.isVanished());
+    assertEquals(expected.isMessenger(), actual.isMessenger());
+    assertEquals(expected.isSocialSpy(), actual.isSocialSpy());
+    assertEquals(expected.isLocalSpy(), actual.isLocalSpy());
+    assertEquals(new ArrayList<>(expected.getIgnored()), new ArrayList<>(actual.getIgnored()));
+    assertEquals(expected.getMutedUntil(), actual.getMutedUntil());
+  }
+
+  @Test
+  public void binaryTest() throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      record.writeBinary(out);
+    }
+
+    assertEquals("Header, name and two UUIDs", 15 + 8 + 4 + 32, bytes.size());
+    assertRecordEquals(
+        record,
+        AccountRecord.readBinary(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+  }
+
+  @Test
+  public void serializedTest() throws IOException, ClassNotFoundException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      record.writeSerialized(out);
+    }
+
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertRecordEquals(record, AccountRecord.readSerialized(in));
+    }
+  }
+
+  @Test
+  public void spySettingsTest() {
+    // Offline, so the player has none of the spy permissions
+    final Account account =
+        new Account(
+            UUID.randomUUID(),
+            ChannelType.LOCAL,
+            false,
+            true,
+            true,
+            true,
+            Collections.emptyList(),
+            new Timestamp(0));
+
+    final AccountRecord saved = AccountRecord.of(account);
+
+    assertTrue("Saving shouldn't switch social spy off", saved.isSocialSpy());
+    assertTrue("Saving shouldn't switch local spy off", saved.isLocalSpy());
+    assertTrue(account.getSocialSpySetting());
+  }
+
+  @Test(expected = IOException.class)
+  public void wrongMagicTest() throws IOException {
+    AccountRecord.readBinary(new DataInputStream(new ByteArrayInputStream(new byte[] {0, 0, 0, 0})));
+  }
+}
@@ -37,7 +37,10 @@ import uk.co.notnull.ProxyChat.module.Module;
 import uk.co.notnull.ProxyChat.testhelpers.TestDatabase;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -155,4 +158,155 @@ public class AccountSQLStorageTest {
       fail("No SQL exception expected: " + e.getLocalizedMessage());
     }
   }
+
+  @Test
+  public void saveAllTest() {
+    try {
+      ProxyChatAccountStorage accountStorage =
+          new AccountSQLStorage(
+              "localhost",
+              TestDatabase.getPort(),
+              database,
+              username,
+              password,
+              tablePrefix,
+              defaultOptions);
+      ProxyChatAccount account1 = accountStorage.load(UUID.randomUUID()).getAccount();
+      ProxyChatAccount account2 = accountStorage.load(UUID.randomUUID()).getAccount();
+
+      assertFalse("New account should not be dirty", account1.isDirty());
+
+      account1.setChannelType(ChannelType.GLOBAL);
+      account2.setVanished(true);
+      account2.addIgnore(account1);
+
+      assertTrue("Changed account should be dirty", account1.isDirty());
+
+      accountStorage.saveAll(Arrays.asList(account1, account2));
+
+      ProxyChatAccount loaded1 = accountStorage.load(account1.getUniqueId()).getAccount();
+      ProxyChatAccount loaded2 = accountStorage.load(account2.getUniqueId()).getAccount();
+
+      assertEquals(ChannelType.GLOBAL, loaded1.getChannelType());
+      assertTrue("Should be vanished", loaded2.isVanished());
+      assertTrue("Should ignore first account", loaded2.hasIgnored(account1.getUniqueId()));
+      assertFalse("Loaded account should not be dirty", loaded2.isDirty());
+    } catch (SQLException e) {
+      fail("No SQL exception expected: " + e.getLocalizedMessage());
+    }
+  }
+
+  @Test
+  public void ignoreChangesTest() throws SQLException {
+    AccountSQLStorage accountStorage =
+        new AccountSQLStorage(
+            "localhost",
+            TestDatabase.getPort(),
+            database,
+            username,
+            password,
+            tablePrefix,
+            defaultOptions);
+    List<ProxyChatAccount> others = new ArrayList<>();
+
+    for (int i = 0; i < 50; i++) {
+      others.add(accountStorage.load(UUID.randomUUID()).getAccount());
+    }
+
+    accountStorage.saveAll(others);
+
+    ProxyChatAccount account = accountStorage.load(UUID.randomUUID()).getAccount();
+    others.forEach(account::addIgnore);
+
+    long statements = accountStorage.getStatementCount();
+    accountStorage.save(account);
+    assertEquals(
+        "Should run the upsert and one batch of inserts",
+        2,
+        accountStorage.getStatementCount() - statements);
+
+    statements = accountStorage.getStatementCount();
+    accountStorage.save(account);
+    assertEquals(
+        "Should only run the upsert when ignores didn't change",
+        1,
+        accountStorage.getStatementCount() - statements);
+
+    account.removeIgnore(others.get(0));
+    account.addIgnore(others.get(0));
+    account.removeIgnore(others.get(1));
+
+    statements = accountStorage.getStatementCount();
+    accountStorage.save(account);
+    assertEquals(
+        "Should run the upsert, one batch of deletes and one batch of inserts",
+        3,
+        accountStorage.getStatementCount() - statements);
+
+    ProxyChatAccount loaded = accountStorage.load(account.getUniqueId()).getAccount();
+
+    assertEquals(49, loaded.getIgnored().size());
+    assertTrue("Should still ignore re-added account", loaded.hasIgnored(others.get(0)));
+    assertFalse("Should not ignore removed account", loaded.hasIgnored(others.get(1)));
+  }
+
+  @Test
+  public void loadAllTest() throws SQLException {
+    AccountSQLStorage accountStorage =
+        new AccountSQLStorage(
+            "localhost",
+            TestDatabase.getPort(),
+            database,
+            username,
+            password,
+            tablePrefix,
+            defaultOptions);
+    List<ProxyChatAccount> saved = new ArrayList<>();
+
+    for (int i = 0; i < 150; i++) {
+      ProxyChatAccount account = accountStorage.load(UUID.randomUUID()).getAccount();
+      account.setChannelType((i % 2 == 0) ? ChannelType.GLOBAL : ChannelType.LOCAL);
+
+      if (i > 0) {
+        account.addIgnore(saved.get(i - 1));
+      }
+
+      saved.add(account);
+    }
+
+    accountStorage.saveAll(saved);
+
+    long statements = accountStorage.getStatementCount();
+    AccountInfo single = accountStorage.load(saved.get(1).getUniqueId());
+    assertEquals(
+        "Should load account and ignores in one query",
+        1,
+        accountStorage.getStatementCount() - statements);
+    assertTrue(
+        "Should ignore previous account",
+        single.getAccount().hasIgnored(saved.get(0).getUniqueId()));
+
+    List<UUID> uuids = new ArrayList<>();
+    saved.forEach(account -> uuids.add(account.getUniqueId()));
+    UUID unknown = UUID.randomUUID();
+    uuids.add(unknown);
+
+    statements = accountStorage.getStatementCount();
+    Map<UUID, AccountInfo> loaded = accountStorage.loadAll(uuids);
+    assertEquals(
+        "Should load 151 accounts in two queries",
+        2,
+        accountStorage.getStatementCount() - statements);
+
+    assertEquals(151, loaded.size());
+    assertTrue("Unknown account should be new", loaded.get(unknown).isNewAccount());
+
+    for (int i = 0; i < saved.size(); i++) {
+      AccountInfo info = loaded.get(saved.get(i).getUniqueId());
+
+      assertFalse("Should not be new account", info.isNewAccount());
+      assertEquals(saved.get(i).getChannelType(), info.getAccount().getChannelType());
+      assertEquals((i > 0) ? 1 : 0, info.getAccount().getIgnored().size());
+    }
+  }
 }
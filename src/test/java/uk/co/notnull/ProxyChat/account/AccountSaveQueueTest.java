@@ -0,0 +1,121 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import uk.co.notnull.ProxyChat.TestHelper;
+import uk.co.notnull.ProxyChat.api.account.AccountInfo;
+import uk.co.notnull.ProxyChat.api.account.AccountManager;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccountStorage;
+import uk.co.notnull.ProxyChat.module.Module;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class AccountSaveQueueTest {
+  private final ProxyChatAccountStorage storage = Mockito.mock(ProxyChatAccountStorage.class);
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    Module.setTest_mode(true);
+
+    TestHelper.initProxyChat();
+  }
+
+  @Before
+  public void setUp() {
+    AccountManager.setAccountStorage(storage);
+  }
+
+  private static ProxyChatAccount mockAccount(boolean dirty) {
+    ProxyChatAccount account = Mockito.mock(ProxyChatAccount.class);
+    Mockito.when(account.getUniqueId()).thenReturn(UUID.randomUUID());
+    Mockito.when(account.isDirty()).thenReturn(dirty);
+
+    return account;
+  }
+
+  @Test
+  public void cleanAccountTest() {
+    final AccountSaveQueue queue = new AccountSaveQueue();
+    final ProxyChatAccount account = mockAccount(false);
+
+    queue.enqueue(account);
+    queue.flush();
+
+    assertFalse("Clean accounts should be skipped", queue.isPending(account.getUniqueId()));
+    Mockito.verifyNoInteractions(storage);
+  }
+
+  @Test
+  public void dirtyAccountTest() {
+    final AccountSaveQueue queue = new AccountSaveQueue();
+    final ProxyChatAccount account = mockAccount(true);
+
+    queue.enqueue(account);
+    queue.enqueue(account);
+
+    assertTrue(queue.isPending(account.getUniqueId()));
+    assertEquals("Should only be queued once", 1, queue.getPendingCount());
+
+    // Stays dirty, as if it changed again during the write
+    queue.flush();
+
+    Mockito.verify(account).markClean();
+    Mockito.verify(storage).saveAll(Collections.singletonList(account));
+    assertTrue("Should be kept for the next flush", queue.isPending(account.getUniqueId()));
+
+    Mockito.when(account.isDirty()).thenReturn(false);
+    queue.flush();
+
+    assertFalse(queue.isPending(account.getUniqueId()));
+  }
+
+  @Test
+  public void newAccountTest() {
+    final UUID uuid = UUID.randomUUID();
+    final Account account = new Account(uuid);
+
+    Mockito.when(storage.load(uuid)).thenReturn(new AccountInfo(account, false, true));
+    ProxyChatAccountManager.configureOfflineCache(0, 0);
+
+    ProxyChatAccountManager.loadAccount(uuid);
+    ProxyChatAccountManager.unloadAccount(uuid);
+
+    assertTrue(
+        "New accounts should be saved even without changes",
+        ProxyChatAccountManager.getSaveQueue().isPending(uuid));
+
+    ProxyChatAccountManager.flushSaves();
+
+    Mockito.verify(storage).saveAll(Collections.singletonList(account));
+    assertFalse(ProxyChatAccountManager.getSaveQueue().isPending(uuid));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import ch.vorburger.exec.ManagedProcessException;
+import uk.co.notnull.ProxyChat.account.ConnectionPool.PooledConnection;
+import uk.co.notnull.ProxyChat.testhelpers.TestDatabase;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.*;
+
+public class ConnectionPoolTest {
+  private static final ConnectionPool.Settings settings =
+      new ConnectionPool.Settings(1, 2, 100L, 600000L, 5, 0L);
+
+  private ConnectionPool pool;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws ManagedProcessException {
+    TestDatabase.startDatabase();
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws ManagedProcessException {
+    TestDatabase.stopDatabase();
+  }
+
+  @Before
+  public void setUp() throws SQLException {
+    pool =
+        new ConnectionPool(
+            "jdbc:mysql://" + TestDatabase.getHost() + "/test", "test", "test", settings);
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void reuseTest() throws SQLException {
+    final PreparedStatement statement;
+
+    try (PooledConnection connection = pool.borrow()) {
+      statement = connection.prepareStatement("SELECT 1");
+    }
+
+    try (PooledConnection connection = pool.borrow()) {
+      assertSame("Statement should be cached", statement, connection.prepareStatement("SELECT 1"));
+    }
+
+    assertEquals("Should only open the minimum", 1, pool.getStats().getCreated());
+  }
+
+  @Test
+  public void maxSizeTest() throws SQLException {
+    try (PooledConnection connection1 = pool.borrow();
+        PooledConnection connection2 = pool.borrow()) {
+      assertNotSame(connection1, connection2);
+      assertEquals(2, pool.getStats().getActive());
+
+      try (PooledConnection ignored = pool.borrow()) {
+        Assert.fail("Pool should be exhausted");
+      } catch (SQLException expected) {
+        assertEquals(1, pool.getStats().getTimeouts());
+      }
+    }
+
+    assertEquals(0, pool.getStats().getActive());
+    assertEquals(2, pool.getStats().getIdle());
+  }
+
+  @Test
+  public void doubleCloseTest() throws SQLException {
+    final PooledConnection connection = pool.borrow();
+
+    connection.close();
+    connection.close();
+
+    try (PooledConnection ignored1 = pool.borrow();
+        PooledConnection ignored2 = pool.borrow();
+        PooledConnection ignored3 = pool.borrow()) {
+      Assert.fail("Closing twice must not free two slots");
+    } catch (SQLException expected) {
+      assertEquals(1, pool.getStats().getTimeouts());
+    }
+  }
+
+  @Test(expected = SQLException.class)
+  public void closedTest() throws SQLException {
+    pool.close();
+    pool.borrow();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class IgnoreIndexTest {
+  private static ProxyChatAccount mockAccount(UUID uuid, UUID... ignored) {
+    ProxyChatAccount account = Mockito.mock(ProxyChatAccount.class);
+    Mockito.when(account.getUniqueId()).thenReturn(uuid);
+    Mockito.when(account.getIgnored()).thenReturn(new LinkedBlockingQueue<>(Arrays.asList(ignored)));
+
+    return account;
+  }
+
+  @Test
+  public void registerTest() {
+    final IgnoreIndex index = new IgnoreIndex();
+    final UUID sender = UUID.randomUUID();
+    final ProxyChatAccount ignorer1 = mockAccount(UUID.randomUUID(), sender);
+    final ProxyChatAccount ignorer2 = mockAccount(UUID.randomUUID(), sender, UUID.randomUUID());
+
+    index.register(ignorer1);
+    index.register(ignorer2);
+
+    assertEquals(
+        new HashSet<>(Arrays.asList(ignorer1.getUniqueId(), ignorer2.getUniqueId())),
+        index.getIgnoringAccounts(sender));
+
+    index.unregister(ignorer1);
+
+    assertEquals(
+        Collections.singleton(ignorer2.getUniqueId()), index.getIgnoringAccounts(sender));
+
+    index.unregister(ignorer2);
+
+    assertTrue(index.getIgnoringAccounts(sender).isEmpty());
+  }
+
+  @Test
+  public void changesTest() {
+    final IgnoreIndex index = new IgnoreIndex();
+    final UUID sender = UUID.randomUUID();
+    final ProxyChatAccount ignorer = mockAccount(UUID.randomUUID());
+    final UUID unregistered = UUID.randomUUID();
+
+    index.register(ignorer);
+    index.onIgnoreAdded(ignorer.getUniqueId(), sender);
+    index.onIgnoreAdded(unregistered, sender);
+
+    assertEquals(
+        "Only registered accounts should be indexed",
+        Collections.singleton(ignorer.getUniqueId()),
+        index.getIgnoringAccounts(sender));
+
+    index.onIgnoreRemoved(ignorer.getUniqueId(), sender);
+
+    assertTrue(index.getIgnoringAccounts(sender).isEmpty());
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class OfflineAccountCacheTest {
+  private static ProxyChatAccount mockAccount(boolean dirty) {
+    ProxyChatAccount account = Mockito.mock(ProxyChatAccount.class);
+    Mockito.when(account.getUniqueId()).thenReturn(UUID.randomUUID());
+    Mockito.when(account.isDirty()).thenReturn(dirty);
+
+    return account;
+  }
+
+  @Test
+  public void takeTest() {
+    final List<ProxyChatAccount> evicted = new ArrayList<>();
+    final OfflineAccountCache cache = new OfflineAccountCache(10, 60000, evicted::add);
+    final ProxyChatAccount account = mockAccount(true);
+
+    cache.put(account);
+
+    assertSame(account, cache.take(account.getUniqueId()));
+    assertNull("Should only be taken once", cache.take(account.getUniqueId()));
+    assertEquals("Taken accounts should not be saved", Collections.emptyList(), evicted);
+  }
+
+  @Test
+  public void evictionTest() {
+    final List<ProxyChatAccount> evicted = new ArrayList<>();
+    final OfflineAccountCache cache = new OfflineAccountCache(1, 60000, evicted::add);
+    final ProxyChatAccount dirtyAccount = mockAccount(true);
+    final ProxyChatAccount cleanAccount = mockAccount(false);
+
+    cache.put(dirtyAccount);
+    cache.put(cleanAccount);
+
+    assertEquals(
+        "Dirty account should be saved on eviction",
+        Collections.singletonList(dirtyAccount),
+        evicted);
+
+    cache.put(mockAccount(false));
+
+    assertEquals("Clean account should not be saved", 1, evicted.size());
+  }
+
+  @Test
+  public void disabledTest() {
+    final List<ProxyChatAccount> evicted = new ArrayList<>();
+    final OfflineAccountCache cache = new OfflineAccountCache(0, 60000, evicted::add);
+    final ProxyChatAccount account = mockAccount(true);
+
+    cache.put(account);
+
+    assertEquals(Collections.singletonList(account), evicted);
+    assertNull(cache.take(account.getUniqueId()));
+  }
+
+  @Test
+  public void evictAllTest() {
+    final List<ProxyChatAccount> evicted = new ArrayList<>();
+    final OfflineAccountCache cache = new OfflineAccountCache(10, 60000, evicted::add);
+    final ProxyChatAccount account = mockAccount(true);
+
+    cache.put(account);
+    cache.put(mockAccount(false));
+    cache.evictAll();
+
+    assertEquals(Collections.singletonList(account), evicted);
+    assertNull(cache.take(account.getUniqueId()));
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.velocitypowered.api.permission.PermissionSubject;
+import uk.co.notnull.ProxyChat.api.permission.Permission;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class PermissionSnapshotTest {
+  @After
+  public void tearDown() {
+    PermissionSnapshot.setExpiry(5000);
+    PermissionSnapshot.setInvalidatedByEvents(false);
+  }
+
+  @Test
+  public void snapshotTest() {
+    final PermissionSubject subject = Mockito.mock(PermissionSubject.class);
+    Mockito.when(subject.hasPermission(Permission.COMMAND_STAFFCHAT_VIEW.getStringedPermission()))
+        .thenReturn(true);
+
+    final PermissionSnapshot snapshot = PermissionSnapshot.of(subject);
+
+    assertTrue(snapshot.has(Permission.COMMAND_STAFFCHAT_VIEW));
+    assertFalse(snapshot.has(Permission.COMMAND_VANISH_VIEW));
+
+    // Later changes are not visible in an existing snapshot
+    Mockito.when(subject.hasPermission(Permission.COMMAND_VANISH_VIEW.getStringedPermission()))
+        .thenReturn(true);
+
+    assertFalse(snapshot.has(Permission.COMMAND_VANISH_VIEW));
+  }
+
+  @Test
+  public void expiryTest() {
+    final PermissionSubject subject = Mockito.mock(PermissionSubject.class);
+
+    PermissionSnapshot.setExpiry(60000);
+    assertFalse(PermissionSnapshot.of(subject).isExpired());
+
+    PermissionSnapshot.setExpiry(0);
+    assertTrue(PermissionSnapshot.of(subject).isExpired());
+
+    PermissionSnapshot.setInvalidatedByEvents(true);
+    assertFalse(
+        "Snapshots replaced on permission events should not expire",
+        PermissionSnapshot.of(subject).isExpired());
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import uk.co.notnull.ProxyChat.TestHelper;
+import uk.co.notnull.ProxyChat.api.account.AccountInfo;
+import uk.co.notnull.ProxyChat.api.account.AccountManager;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccountStorage;
+import uk.co.notnull.ProxyChat.module.Module;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ProxyChatAccountManagerTest {
+  private final ProxyChatAccountStorage storage = Mockito.mock(ProxyChatAccountStorage.class);
+
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    Module.setTest_mode(true);
+
+    TestHelper.initProxyChat();
+  }
+
+  @Before
+  public void setUp() {
+    AccountManager.setAccountStorage(storage);
+    ProxyChatAccountManager.configureLoginBatching(0, 1);
+    ProxyChatAccountManager.configureOfflineCache(10, 60000);
+  }
+
+  @After
+  public void tearDown() {
+    ProxyChatAccountManager.configureOfflineCache(0, 0);
+    ProxyChatAccountManager.getSaveQueue().drain();
+  }
+
+  @Test(timeout = 10000)
+  public void reconnectDuringLoadTest() throws Exception {
+    final UUID uuid = UUID.randomUUID();
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    Mockito.when(storage.load(uuid))
+        .thenAnswer(
+            invocation -> {
+              loading.countDown();
+              release.await();
+
+              return new AccountInfo(new Account(uuid), false, false);
+            });
+
+    final CompletableFuture<ProxyChatAccount> firstLoad =
+        ProxyChatAccountManager.loadAccountAsync(uuid);
+
+    loading.await();
+    // Disconnects while the account is loading, then connects again
+    ProxyChatAccountManager.unloadAccount(uuid);
+    final CompletableFuture<ProxyChatAccount> secondLoad =
+        ProxyChatAccountManager.loadAccountAsync(uuid);
+    release.countDown();
+
+    final ProxyChatAccount account = secondLoad.get(5, TimeUnit.SECONDS);
+
+    assertSame("The account of the first session should be reused", firstLoad.get(), account);
+    assertSame(
+        "The new session should keep its account",
+        account,
+        AccountManager.getAccount(uuid).orElse(null));
+    Mockito.verify(storage, Mockito.times(1)).load(uuid);
+
+    ProxyChatAccountManager.unloadAccount(uuid);
+  }
+
+  @Test(timeout = 10000)
+  public void flushAllDeadlineTest() throws Exception {
+    final UUID uuid = UUID.randomUUID();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    Mockito.when(storage.load(uuid)).thenReturn(new AccountInfo(new Account(uuid), false, true));
+    Mockito.doAnswer(
+            invocation -> {
+              release.await();
+
+              return null;
+            })
+        .when(storage)
+        .saveAll(Mockito.anyCollection());
+
+    ProxyChatAccountManager.loadAccount(uuid);
+
+    try {
+      assertEquals(
+          "Accounts still being written at the deadline should be reported",
+          Set.of(uuid),
+          ProxyChatAccountManager.flushAll(100));
+    } finally {
+      release.countDown();
+    }
+
+    ProxyChatAccountManager.unloadAccount(uuid);
+  }
+}
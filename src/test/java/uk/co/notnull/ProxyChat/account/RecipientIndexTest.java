@@ -0,0 +1,91 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import uk.co.notnull.ProxyChat.api.permission.Permission;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class RecipientIndexTest {
+  private static ProxyChatAccount mockAccount() {
+    ProxyChatAccount account = Mockito.mock(ProxyChatAccount.class);
+    Mockito.when(account.getUniqueId()).thenReturn(UUID.randomUUID());
+
+    return account;
+  }
+
+  @Test
+  public void registerTest() {
+    final RecipientIndex index = new RecipientIndex();
+    final ProxyChatAccount spy = mockAccount();
+    final ProxyChatAccount staff = mockAccount();
+    Mockito.when(spy.hasSocialSpyEnabled()).thenReturn(true);
+    Mockito.when(staff.hasPermission(Permission.COMMAND_STAFFCHAT_VIEW)).thenReturn(true);
+
+    index.register(spy);
+    index.register(staff);
+
+    assertEquals(
+        Collections.singleton(spy.getUniqueId()),
+        index.getMembers(RecipientIndex.Group.SOCIAL_SPY));
+    assertEquals(
+        Collections.singleton(staff.getUniqueId()),
+        index.getMembers(RecipientIndex.Group.STAFF_CHAT));
+    assertTrue(index.getMembers(RecipientIndex.Group.LOCAL_SPY).isEmpty());
+
+    index.unregister(spy);
+
+    assertTrue(index.getMembers(RecipientIndex.Group.SOCIAL_SPY).isEmpty());
+  }
+
+  @Test
+  public void updateTest() {
+    final RecipientIndex index = new RecipientIndex();
+    final ProxyChatAccount account = mockAccount();
+    final ProxyChatAccount unregistered = mockAccount();
+
+    index.register(account);
+    assertTrue(index.getMembers(RecipientIndex.Group.JOIN_VIEW).isEmpty());
+
+    Mockito.when(account.hasPermission(Permission.MESSAGE_JOIN_VIEW)).thenReturn(true);
+    Mockito.when(unregistered.hasPermission(Permission.MESSAGE_JOIN_VIEW)).thenReturn(true);
+    index.update(account);
+    index.update(unregistered);
+
+    assertEquals(
+        "Only registered accounts should be updated",
+        Collections.singleton(account.getUniqueId()),
+        index.getMembers(RecipientIndex.Group.JOIN_VIEW));
+
+    Mockito.when(account.hasPermission(Permission.MESSAGE_JOIN_VIEW)).thenReturn(false);
+    index.update(account);
+
+    assertTrue(index.getMembers(RecipientIndex.Group.JOIN_VIEW).isEmpty());
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class ServerIndexTest {
+  @Test
+  public void moveTest() {
+    final ServerIndex index = new ServerIndex();
+    final UUID player1 = UUID.randomUUID();
+    final UUID player2 = UUID.randomUUID();
+
+    index.move(player1, "lobby");
+    index.move(player2, "lobby");
+
+    assertEquals(new HashSet<>(Arrays.asList(player1, player2)), index.getPlayers("lobby"));
+
+    index.move(player1, "survival");
+    index.move(player1, "survival");
+
+    assertEquals(Collections.singleton(player2), index.getPlayers("lobby"));
+    assertEquals(Collections.singleton(player1), index.getPlayers("survival"));
+    assertEquals(2, index.getServerCount());
+  }
+
+  @Test
+  public void removeTest() {
+    final ServerIndex index = new ServerIndex();
+    final UUID player = UUID.randomUUID();
+
+    index.move(player, "lobby");
+    index.remove(player);
+    index.remove(UUID.randomUUID());
+
+    assertTrue(index.getPlayers("lobby").isEmpty());
+    assertEquals("Empty servers should be dropped", 0, index.getServerCount());
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.api.hook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.kyori.adventure.text.Component;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class HookManagerTest {
+  private static final String HOOK_NAME = "HookManagerTest";
+
+  private final AtomicInteger lookups = new AtomicInteger();
+  private ProxyChatAccount account;
+
+  @Before
+  public void setUp() {
+    account = Mockito.mock(ProxyChatAccount.class);
+    Mockito.when(account.getUniqueId()).thenReturn(UUID.randomUUID());
+    Mockito.when(account.getName()).thenReturn("Test");
+    Mockito.when(account.getDisplayName()).thenReturn("Test");
+    Mockito.when(account.getServer()).thenReturn(Optional.of(Mockito.mock(RegisteredServer.class)));
+
+    HookManager.addHook(HOOK_NAME, new CountingHook());
+  }
+
+  @After
+  public void tearDown() {
+    HookManager.removeHook(HOOK_NAME);
+  }
+
+  @Test
+  public void cachedTest() {
+    assertEquals("<red>", HookManager.getPrefix(account));
+    assertEquals("<red>", HookManager.getPrefix(account));
+    assertSame(HookManager.getPrefixComponent(account), HookManager.getPrefixComponent(account));
+    assertSame(HookManager.getFullNameComponent(account), HookManager.getFullNameComponent(account));
+
+    assertEquals("Hook should only be asked once", 1, lookups.get());
+  }
+
+  @Test
+  public void invalidateTest() {
+    HookManager.getPrefix(account);
+    HookManager.invalidate(account.getUniqueId());
+    HookManager.getPrefix(account);
+
+    assertEquals(2, lookups.get());
+  }
+
+  @Test
+  public void offlineNotCachedTest() {
+    Mockito.when(account.getServer()).thenReturn(Optional.empty());
+
+    HookManager.getPrefix(account);
+    HookManager.getPrefix(account);
+
+    assertEquals("Offline accounts shouldn't be cached", 2, lookups.get());
+  }
+
+  @Test
+  public void displayNameChangeTest() {
+    final Component fullDisplayName = HookManager.getFullDisplayNameComponent(account);
+    Mockito.when(account.getDisplayName()).thenReturn("Changed");
+
+    assertNotEquals(
+        "Display name changes should be shown", fullDisplayName, HookManager.getFullDisplayNameComponent(account));
+    assertEquals("Prefix shouldn't be looked up again", 1, lookups.get());
+  }
+
+  private final class CountingHook implements ProxyChatHook {
+    @Override
+    public Optional<String> getPrefix(ProxyChatAccount account) {
+      lookups.incrementAndGet();
+
+      return Optional.of("<red>");
+    }
+
+    @Override
+    public Optional<String> getSuffix(ProxyChatAccount account) {
+      return Optional.of("");
+    }
+
+    @Override
+    public int getPriority() {
+      return 1000;
+    }
+  }
+}
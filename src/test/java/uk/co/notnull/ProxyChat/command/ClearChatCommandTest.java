@@ -22,13 +22,18 @@
 package uk.co.notnull.ProxyChat.command;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.TextComponent;
 import uk.co.notnull.ProxyChat.testhelpers.ServerInfoTest;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -90,4 +95,39 @@ public class ClearChatCommandTest extends ServerInfoTest {
     assertEquals(Collections.emptyList(), tabComplete("xxx", "main", "test", ""));
     assertEquals(Collections.emptyList(), tabComplete("xxx", "main", "test", "test"));
   }
+
+  @Before
+  public void resetCooldowns() {
+    ClearChatCommand.resetCooldowns();
+  }
+
+  @Test
+  public void emptyLinesTest() {
+    final TextComponent lines = (TextComponent) ClearChatCommand.getEmptyLines(20);
+
+    assertEquals(19, lines.content().length());
+    assertSame("Component should be reused", lines, ClearChatCommand.getEmptyLines(20));
+  }
+
+  @Test
+  public void cooldownTest() {
+    assertTrue(ClearChatCommand.tryClear("main", 1000, 5000));
+    assertFalse("Repeated clear should be merged", ClearChatCommand.tryClear("main", 2000, 5000));
+    assertTrue("Other servers have their own cooldown", ClearChatCommand.tryClear("hub1", 2000, 5000));
+    assertTrue("Cooldown should expire", ClearChatCommand.tryClear("main", 6000, 5000));
+  }
+
+  @Test
+  public void globalCooldownTest() {
+    assertTrue(ClearChatCommand.tryClear("main", 1000, 5000));
+    assertTrue("Local clear shouldn't block global clear", ClearChatCommand.tryClear("*", 1000, 5000));
+    assertFalse("Global clear covers local chats", ClearChatCommand.tryClear("hub1", 2000, 5000));
+    assertTrue(ClearChatCommand.tryClear("hub1", 6000, 5000));
+  }
+
+  @Test
+  public void noCooldownTest() {
+    assertTrue(ClearChatCommand.tryClear("main", 1000, 0));
+    assertTrue(ClearChatCommand.tryClear("main", 1000, 0));
+  }
 }
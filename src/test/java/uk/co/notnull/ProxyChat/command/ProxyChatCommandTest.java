@@ -45,7 +45,7 @@ public class ProxyChatCommandTest extends AccountManagerTest {
 
   @Test
   public void tabCompletefirstArgumentTest() {
-    assertEquals(Arrays.asList("modules", "reload"), tabComplete(""));
+    assertEquals(Arrays.asList("modules", "reload", "stats"), tabComplete(""));
     assertEquals(Collections.singletonList("modules"), tabComplete("mod"));
     assertEquals(Collections.emptyList(), tabComplete("xxx"));
   }
@@ -0,0 +1,73 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import uk.co.notnull.ProxyChat.account.RecipientIndex;
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatContext;
+import org.junit.Test;
+
+public class AnnouncementCoalescerTest {
+  private static AnnouncementCoalescer create(int threshold) {
+    return new AnnouncementCoalescer(
+        ChannelType.JOIN, Format.JOIN_SUMMARY, RecipientIndex.Group.JOIN_VIEW, threshold, 1000);
+  }
+
+  @Test
+  public void thresholdTest() {
+    final AnnouncementCoalescer coalescer = create(2);
+
+    assertFalse(coalescer.offer(new ProxyChatContext(), 0));
+    assertFalse(coalescer.offer(new ProxyChatContext(), 100));
+    assertTrue("Messages above the threshold should be held back", coalescer.offer(new ProxyChatContext(), 200));
+    assertTrue(coalescer.offer(new ProxyChatContext(), 300));
+
+    assertEquals(2, coalescer.drain().size());
+    assertEquals("Draining should clear held back messages", 0, coalescer.drain().size());
+    assertEquals("suppressed=2, summaries=0", coalescer.getStats());
+  }
+
+  @Test
+  public void windowTest() {
+    final AnnouncementCoalescer coalescer = create(1);
+
+    assertFalse(coalescer.offer(new ProxyChatContext(), 0));
+    assertTrue(coalescer.offer(new ProxyChatContext(), 500));
+    assertFalse("A new window should reset the count", coalescer.offer(new ProxyChatContext(), 1000));
+    assertTrue(coalescer.offer(new ProxyChatContext(), 1500));
+  }
+
+  @Test
+  public void disabledTest() {
+    final AnnouncementCoalescer coalescer = create(0);
+
+    for (int i = 0; i < 100; i++) {
+      assertFalse(coalescer.offer(new ProxyChatContext(), i));
+    }
+
+    assertEquals(0, coalescer.drain().size());
+  }
+}
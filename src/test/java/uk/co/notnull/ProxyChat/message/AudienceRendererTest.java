@@ -0,0 +1,102 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import static org.junit.Assert.assertEquals;
+
+import uk.co.notnull.ProxyChat.api.enums.ChannelType;
+import uk.co.notnull.ProxyChat.api.placeholder.PlaceHolder;
+import uk.co.notnull.ProxyChat.api.placeholder.PlaceHolderManager;
+import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatContext;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AudienceRendererTest {
+  private static final Component FORMAT = Component.text("%sender_counter% %channel_counter%");
+
+  private final AtomicInteger senderRenders = new AtomicInteger();
+  private final AtomicInteger channelRenders = new AtomicInteger();
+
+  @Before
+  public void registerPlaceHolders() {
+    PlaceHolderManager.registerPlaceholder(
+        new PlaceHolder(
+            "sender_counter", context -> String.valueOf(senderRenders.incrementAndGet())),
+        new PlaceHolder(
+                "channel_counter", context -> String.valueOf(channelRenders.incrementAndGet()))
+            .setChannelDependent(true));
+  }
+
+  @After
+  public void clearPlaceHolders() {
+    PlaceHolderManager.clear();
+  }
+
+  @Test
+  public void renderedOnceTest() {
+    final AudienceRenderer renderer = new AudienceRenderer(new ProxyChatContext());
+
+    assertEquals("1 1", render(renderer));
+    assertEquals("Should be rendered once per context", "1 1", render(renderer));
+  }
+
+  @Test
+  public void contextChangeTest() {
+    final AudienceRenderer renderer = new AudienceRenderer(new ProxyChatContext());
+
+    render(renderer);
+    renderer.getContext().setMessage("Changed");
+
+    assertEquals("Changing the context should render again", "2 2", render(renderer));
+  }
+
+  @Test
+  public void channelChangeTest() {
+    final AudienceRenderer renderer = new AudienceRenderer(new ProxyChatContext());
+
+    render(renderer);
+    renderer.getContext().setChannel(ChannelType.MULTICAST);
+
+    assertEquals(
+        "Only channel dependent placeholders should render again", "1 2", render(renderer));
+  }
+
+  private static String render(AudienceRenderer renderer) {
+    return toPlainText(renderer.render(FORMAT));
+  }
+
+  private static String toPlainText(Component component) {
+    final StringBuilder builder = new StringBuilder();
+
+    if (component instanceof TextComponent text) {
+      builder.append(text.content());
+    }
+
+    component.children().forEach(child -> builder.append(toPlainText(child)));
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import uk.co.notnull.ProxyChat.api.placeholder.ProxyChatContext;
+import uk.co.notnull.ProxyChat.util.ComponentUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.junit.Test;
+
+public class FormatTemplateTest {
+  private static final ProxyChatContext EMPTY_CONTEXT = new ProxyChatContext();
+
+  private static FormatTemplate compile(String format) {
+    return FormatTemplate.compile(ComponentUtil.miniMessage.deserialize(format));
+  }
+
+  private static String toPlainText(Component component) {
+    final StringBuilder builder = new StringBuilder();
+
+    if (component instanceof TextComponent text) {
+      builder.append(text.content());
+    }
+
+    component.children().forEach(child -> builder.append(toPlainText(child)));
+
+    return builder.toString();
+  }
+
+  @Test
+  public void staticFormatTest() {
+    final FormatTemplate template = compile("<yellow>Hello <red>world");
+
+    assertFalse(template.hasPlaceholders());
+    assertSame("Formats without placeholders should be shared",
+               template.getComponent(), template.render(EMPTY_CONTEXT));
+  }
+
+  @Test
+  public void unknownPlaceholderTest() {
+    final FormatTemplate template = compile("<yellow>Hello %xxx_unknown% <red>world %%");
+
+    assertTrue(template.hasPlaceholders());
+    assertEquals("Hello %xxx_unknown% world %%", toPlainText(template.render(EMPTY_CONTEXT)));
+  }
+
+  @Test
+  public void hoverPlaceholderTest() {
+    final FormatTemplate template = compile("<hover:show_text:'%xxx_unknown%'>Hello</hover> world");
+
+    assertTrue(template.hasPlaceholders());
+    assertEquals("Hello world", toPlainText(template.render(EMPTY_CONTEXT)));
+  }
+}
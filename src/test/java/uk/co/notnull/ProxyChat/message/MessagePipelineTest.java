@@ -0,0 +1,128 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import uk.co.notnull.ProxyChat.api.account.ProxyChatAccount;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class MessagePipelineTest {
+  @Test
+  public void directTest() {
+    final MessagePipeline pipeline = new MessagePipeline(0, 0);
+    final List<Integer> delivered = new ArrayList<>();
+
+    pipeline.submit(UUID.randomUUID(), () -> delivered.add(1));
+
+    assertEquals("Should run on the calling thread", Collections.singletonList(1), delivered);
+  }
+
+  @Test
+  public void orderTest() {
+    final MessagePipeline pipeline = new MessagePipeline(4, 1000);
+    final UUID sender1 = UUID.randomUUID();
+    final UUID sender2 = UUID.randomUUID();
+    final List<Integer> delivered1 = Collections.synchronizedList(new ArrayList<>());
+    final List<Integer> delivered2 = Collections.synchronizedList(new ArrayList<>());
+
+    for (int i = 0; i < 500; i++) {
+      final int message = i;
+
+      pipeline.submit(sender1, () -> delivered1.add(message));
+      pipeline.submit(sender2, () -> delivered2.add(message));
+    }
+
+    pipeline.shutdown(10000);
+
+    final List<Integer> expected = IntStream.range(0, 500).boxed().collect(Collectors.toList());
+
+    assertEquals("Messages of a sender should stay in order", expected, delivered1);
+    assertEquals("Messages of a sender should stay in order", expected, delivered2);
+    assertEquals(0, pipeline.getQueueDepth());
+  }
+
+  @Test(timeout = 10000)
+  public void fullLaneTest() throws InterruptedException {
+    final MessagePipeline pipeline = new MessagePipeline(1, 1);
+    final UUID sender = UUID.randomUUID();
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    assertTrue(
+        pipeline.submit(
+            sender,
+            () -> {
+              running.countDown();
+
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }));
+    running.await();
+
+    assertTrue("Should wait in the queue", pipeline.submit(sender, () -> {}));
+    assertFalse("Should be rejected instead of blocking", pipeline.submit(sender, () -> {}));
+
+    release.countDown();
+    pipeline.shutdown(10000);
+  }
+
+  @Test
+  public void fanOutBatchTest() {
+    final MessagePipeline pipeline = new MessagePipeline(0, 0);
+    final List<ProxyChatAccount> candidates = new ArrayList<>();
+    final List<List<ProxyChatAccount>> batches = new ArrayList<>();
+
+    for (int i = 0; i < 10; i++) {
+      candidates.add(mock(ProxyChatAccount.class));
+    }
+
+    pipeline.fanOut(candidates, account -> candidates.indexOf(account) % 2 == 0, batches::add);
+
+    assertEquals("Recipients should be delivered as one batch", 1, batches.size());
+    assertEquals(5, batches.get(0).size());
+  }
+
+  @Test
+  public void fanOutNoRecipientsTest() {
+    final MessagePipeline pipeline = new MessagePipeline(0, 0);
+    final List<List<ProxyChatAccount>> batches = new ArrayList<>();
+
+    pipeline.fanOut(Collections.singletonList(mock(ProxyChatAccount.class)), account -> false, batches::add);
+
+    assertEquals("Nothing should be delivered without recipients", 0, batches.size());
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * ProxyChat, a Velocity chat solution
+ * Copyright (C) 2020 James Lyne
+ *
+ * Based on BungeeChat2 (https://github.com/AuraDevelopmentTeam/BungeeChat2)
+ * Copyright (C) 2020 Aura Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.co.notnull.ProxyChat.module;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class MulticastChatModuleTest {
+  @Test
+  public void routingTableTest() {
+    final Map<String, Set<String>> table =
+        MulticastChatModule.buildRoutingTable(
+            Arrays.asList(
+                Arrays.asList("lobby", "hub"),
+                Arrays.asList("survival", "creative", "lobby")));
+
+    assertEquals(new HashSet<>(List.of("hub", "survival", "creative")), table.get("lobby"));
+    assertEquals(Collections.singleton("lobby"), table.get("hub"));
+    // The lobby only receives messages from the servers of its first group
+    assertEquals(Collections.singleton("creative"), table.get("survival"));
+    assertEquals(Collections.singleton("survival"), table.get("creative"));
+  }
+
+  @Test
+  public void emptyRoutingTableTest() {
+    assertEquals(
+        Collections.emptyMap(), MulticastChatModule.buildRoutingTable(Collections.emptyList()));
+  }
+}